@@ -0,0 +1,81 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import de.futuresqr.server.datasource.ReadWriteRoutingDataSource;
+
+/**
+ * Routes read-only transactions to a replica data source, configured by the
+ * <code>fsqr.datasource.replica</code> properties. Without a replica URL the
+ * single data source of Spring Boot is used.
+ * 
+ * @author Robert Breunung
+ */
+@Configuration
+@ConditionalOnProperty("fsqr.datasource.replica.url")
+public class DataSourceConfiguration {
+
+	@Bean
+	@Primary
+	@ConfigurationProperties("spring.datasource")
+	DataSourceProperties primaryDataSourceProperties() {
+		return new DataSourceProperties();
+	}
+
+	@Bean
+	@ConfigurationProperties("fsqr.datasource.replica")
+	DataSourceProperties replicaDataSourceProperties() {
+		return new DataSourceProperties();
+	}
+
+	@Bean(autowireCandidate = false)
+	DataSource primaryDataSource() {
+		return primaryDataSourceProperties().initializeDataSourceBuilder().build();
+	}
+
+	@Bean(autowireCandidate = false)
+	DataSource replicaDataSource() {
+		return replicaDataSourceProperties().initializeDataSourceBuilder().build();
+	}
+
+	@Bean
+	@Primary
+	DataSource dataSource(@Value("${fsqr.datasource.replica.max-lag:2s}") Duration maxLag) {
+		return new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(primaryDataSource(), replicaDataSource(), maxLag));
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import de.futuresqr.server.service.LoginThrottle;
+import de.futuresqr.server.service.SessionPrincipalCache;
+import de.futuresqr.server.service.SimpleUserLookup;
+import de.futuresqr.server.service.UserDetailsCache;
+import de.futuresqr.server.session.JdbcSecurityContextRepository;
+import de.futuresqr.server.session.TokenRevocationSet;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the application metrics to the Micrometer registry, which are
+ * published by the actuator end point <code>/actuator/prometheus</code> to
+ * admins and the scraper with the scrape token. Request, repository and
+ * Hibernate metrics are recorded by Spring Boot, see
+ * <code>application.properties</code>. The meters below are read on scraping
+ * only and cost nothing on the request path.
+ * 
+ * @author Robert Breunung
+ */
+@Configuration
+public class MetricsConfiguration {
+
+	private static final String CACHE = "cache";
+	private static final String RESULT = "result";
+
+	/**
+	 * Hit ratio of the application caches is
+	 * <code>cache_gets_total{result="hit"} / cache_gets_total</code>.
+	 */
+	@Bean
+	MeterBinder cacheMetrics(UserDetailsCache userDetailsCache, SimpleUserLookup simpleUserLookup,
+			SessionPrincipalCache sessionPrincipalCache) {
+		return registry -> {
+			bindCache(registry, "userDetails", userDetailsCache::getStatistics);
+			bindCache(registry, "simpleUser", simpleUserLookup::getStatistics);
+			bindCache(registry, "sessionPrincipal", sessionPrincipalCache::getStatistics);
+		};
+	}
+
+	@Bean
+	MeterBinder loginThrottleMetrics(LoginThrottle loginThrottle) {
+		return registry -> {
+			FunctionCounter.builder("fsqr.login.throttle", loginThrottle, LoginThrottle::getPermitted)
+					.tag(RESULT, "permitted").description("Login attempts passing the throttle.").register(registry);
+			FunctionCounter.builder("fsqr.login.throttle", loginThrottle, LoginThrottle::getRejectedByAccount)
+					.tag(RESULT, "rejected-account").register(registry);
+			FunctionCounter.builder("fsqr.login.throttle", loginThrottle, LoginThrottle::getRejectedByAddress)
+					.tag(RESULT, "rejected-address").register(registry);
+			Gauge.builder("fsqr.login.throttle.buckets", loginThrottle, LoginThrottle::getBucketCount)
+					.description("Throttled login names and client addresses.").register(registry);
+		};
+	}
+
+	@Bean
+	MeterBinder passwordEncoderMetrics(PasswordEncoder passwordEncoder) {
+		return registry -> {
+			if (passwordEncoder instanceof MeterBinder binder) {
+				binder.bindTo(registry);
+			}
+		};
+	}
+
+	/**
+	 * Session counts of the configured session store. Servlet sessions are
+	 * counted by the Tomcat metrics.
+	 */
+	@Bean
+	MeterBinder sessionMetrics(ObjectProvider<JdbcSecurityContextRepository> jdbcSessions,
+			ObjectProvider<TokenRevocationSet> tokenRevocations) {
+		return registry -> {
+			jdbcSessions.ifAvailable(repository -> Gauge
+					.builder("fsqr.sessions.active", repository, JdbcSecurityContextRepository::countActiveSessions)
+					.description("Sessions which are not expired.").register(registry));
+			tokenRevocations.ifAvailable(revocations -> Gauge
+					.builder("fsqr.tokens.revocations", revocations, TokenRevocationSet::size)
+					.description("Users with revoked tokens.").register(registry));
+		};
+	}
+
+	private static void bindCache(MeterRegistry registry, String name, Supplier<CacheStats> statistics) {
+		FunctionCounter.builder("cache.gets", statistics, stats -> stats.get().hitCount())
+				.tags(CACHE, name, RESULT, "hit").description("Cache lookups by result.").register(registry);
+		FunctionCounter.builder("cache.gets", statistics, stats -> stats.get().missCount())
+				.tags(CACHE, name, RESULT, "miss").register(registry);
+		FunctionCounter.builder("cache.evictions", statistics, stats -> stats.get().evictionCount()).tags(CACHE, name)
+				.description("Entries evicted by size or age.").register(registry);
+	}
+}
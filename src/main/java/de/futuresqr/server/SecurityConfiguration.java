@@ -23,21 +23,53 @@
  */
 package de.futuresqr.server;
 
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.DefaultSecurityFilterChain;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
-import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.authentication.DelegatingAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+import org.springframework.security.web.authentication.session.NullAuthenticatedSessionStrategy;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import de.futuresqr.server.model.backend.UserRole;
 import de.futuresqr.server.rest.demo.LoginHandler;
 import de.futuresqr.server.rest.user.LoginConfigurer;
+import de.futuresqr.server.rest.user.LoginThrottleFilter;
 import de.futuresqr.server.restdata.UserRepository;
-import de.futuresqr.server.service.FsqrUserDetailsManager;
+import de.futuresqr.server.security.PathTrieAuthorizationManager;
+import de.futuresqr.server.security.ScrapeTokenAuthorizationManager;
+import de.futuresqr.server.security.UserRoleAuthorizationManager;
+import de.futuresqr.server.service.BoundedPasswordEncoder;
+import de.futuresqr.server.service.LoginThrottle;
+import de.futuresqr.server.service.PasswordEncoderFactory;
+import de.futuresqr.server.service.PasswordHashingRejectedException;
+import de.futuresqr.server.session.HmacCsrfTokenRepository;
+import de.futuresqr.server.session.TokenSecurityContextRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Main configuration for Spring Security.
@@ -45,40 +77,137 @@ import de.futuresqr.server.service.FsqrUserDetailsManager;
  * @author Robert Breunung
  */
 @Configuration
+@Slf4j
 public class SecurityConfiguration {
 
 	private static final String PATH_RESTDATA = "/restdata/**";
 	private static final String PATH_REST = "/rest/**";
+	private static final String PATH_REST_ADMIN = "/rest/admin/**";
+	private static final String PATH_REST_USER_BATCH = "/rest/user/batch/**";
+	private static final String PATH_REST_USER_IMPORT = "/rest/user/import";
 	public static final String PATH_REST_USER_AUTHENTICATE = "/rest/user/authenticate";
+	private static final String PATH_REST_LOGIN = "/rest/login";
 
 	@Bean
-	SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+	SecurityFilterChain filterChain(HttpSecurity http, LoginThrottle loginThrottle,
+			SecurityContextRepository securityContextRepository, HmacCsrfTokenRepository csrfTokenRepository,
+			MeterRegistry meterRegistry, @Value("${fsqr.metrics.scrape-token:}") String scrapeToken) throws Exception {
 
-		http.authorizeHttpRequests() // authorization section
-				// rest login area
-				.antMatchers("/rest/login/**", "/rest/user/csrf", "/rest/user/info", "/rest/user/reauthenticate").permitAll()
-				// demo end point for SayHello.java
-				.antMatchers("/rest/say-hello").permitAll()
-				// user repository area
-				.antMatchers(PATH_REST).authenticated()
-				// plain data repository area
-				.antMatchers(PATH_RESTDATA).hasRole(FsqrUserDetailsManager.ROLE_ADMIN);
-		http.apply(new LoginConfigurer<>()).loginProcessingUrl(PATH_REST_USER_AUTHENTICATE) //
-				.successHandler(authenticationSuccessHandler(null));
+		// the rules are compiled into a single path trie
+		http.authorizeHttpRequests().anyRequest().access(authorizationRules(scrapeToken));
+		http.addFilterBefore(new LoginThrottleFilter(loginThrottle,
+				new OrRequestMatcher(new AntPathRequestMatcher(PATH_REST_USER_AUTHENTICATE, "POST"),
+						new AntPathRequestMatcher(PATH_REST_LOGIN, "POST"))),
+				UsernamePasswordAuthenticationFilter.class);
+		http.apply(new LoginConfigurer<>()).meterRegistry(meterRegistry) //
+				.loginProcessingUrl(PATH_REST_USER_AUTHENTICATE) //
+				.successHandler(authenticationSuccessHandler(null, null, null)) //
+				.failureHandler(authenticationFailureHandler());
+		// the context is stored on login only, see SessionConfiguration
+		http.securityContext().securityContextRepository(securityContextRepository).requireExplicitSave(true);
 		http.logout().logoutUrl("/rest/user/logout") //
 				.logoutSuccessUrl("/rest/user/info");
-		http.csrf().csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse());
+		if (securityContextRepository instanceof LogoutHandler logoutHandler) {
+			http.logout().addLogoutHandler(logoutHandler);
+		}
+		// the login handler answers the token of the new session
+		// the refresh comes anonymous with an expired access token, see TokenRefreshController
+		http.csrf().csrfTokenRepository(csrfTokenRepository)
+				.ignoringRequestMatchers(new AntPathRequestMatcher(TokenSecurityContextRepository.REFRESH_PATH, "POST"))
+				.sessionAuthenticationStrategy(new NullAuthenticatedSessionStrategy());
 		DefaultSecurityFilterChain build = http.build();
 		return build;
 	}
 
+	/**
+	 * The first declared rule matching a request decides. Paths without a
+	 * declared rule are denied.
+	 * 
+	 * @param scrapeToken Bearer token of the metrics scraper, if any.
+	 */
+	public static PathTrieAuthorizationManager authorizationRules(String scrapeToken) {
+		return PathTrieAuthorizationManager.builder() //
+				// rest login area
+				.permitAll("/rest/login/**", "/rest/user/csrf", "/rest/user/info", "/rest/user/reauthenticate",
+						TokenSecurityContextRepository.REFRESH_PATH)
+				// demo end point for SayHello.java
+				.permitAll("/rest/say-hello")
+				// administration area
+				.hasRole(UserRole.ADMIN, PATH_REST_ADMIN)
+				// user administration, there is no method security for @RolesAllowed
+				.hasRole(UserRole.ADMIN, "/rest/user/add", "/rest/user/ban", "/rest/user/edit", "/rest/user/unban",
+						PATH_REST_USER_BATCH, PATH_REST_USER_IMPORT)
+				// user repository area
+				.authenticated(PATH_REST)
+				// plain data repository area
+				.hasRole(UserRole.ADMIN, PATH_RESTDATA)
+				// health checks
+				.permitAll("/actuator/health", "/actuator/health/**")
+				// metrics scraping by admins or the scrape token
+				.rule(null,
+						new ScrapeTokenAuthorizationManager(scrapeToken,
+								UserRoleAuthorizationManager.hasAnyRole(UserRole.ADMIN)),
+						"/actuator/prometheus")
+				// other actuator end points
+				.hasRole(UserRole.ADMIN, "/actuator/**")
+				// static frontend, login page and error dispatches
+				.permitAll("/", "/index.html", "/favicon.ico", "/static/**", "/login", "/error")
+				// everything else is undeclared
+				.denyAll("/**").build();
+	}
+
 	@Bean
-	AuthenticationSuccessHandler authenticationSuccessHandler(@NonNull UserRepository userRepository) {
-		return new LoginHandler(userRepository);
+	AuthenticationSuccessHandler authenticationSuccessHandler(@NonNull UserRepository userRepository,
+			@NonNull ObjectMapper objectMapper, @NonNull HmacCsrfTokenRepository csrfTokenRepository) {
+		return new LoginHandler(userRepository, objectMapper, csrfTokenRepository);
+	}
+
+	/**
+	 * CSRF tokens are signed by <code>fsqr.security.csrf.key</code>. Without a
+	 * key a random key is used, which is neither shared with other nodes nor kept
+	 * over a restart.
+	 */
+	@Bean
+	HmacCsrfTokenRepository csrfTokenRepository(@Value("${fsqr.security.csrf.key:}") String key,
+			@Value("${fsqr.security.csrf.max-age:12h}") Duration maxAge) {
+		byte[] secret;
+		if (StringUtils.hasText(key)) {
+			secret = Base64.getDecoder().decode(key.trim());
+		} else {
+			log.warn("No CSRF signing key configured. Tokens are signed by a random key of this node.");
+			secret = new byte[32];
+			new SecureRandom().nextBytes(secret);
+		}
+		return new HmacCsrfTokenRepository(secret, maxAge);
+	}
+
+	/**
+	 * Answer exhausted password hashing capacity with 503 and keep the default
+	 * behavior for all other failures.
+	 */
+	private AuthenticationFailureHandler authenticationFailureHandler() {
+		LinkedHashMap<Class<? extends AuthenticationException>, AuthenticationFailureHandler> handlers = new LinkedHashMap<>();
+		handlers.put(PasswordHashingRejectedException.class, (request, response, exception) -> {
+			response.setHeader(RETRY_AFTER, "1");
+			response.sendError(SERVICE_UNAVAILABLE.value(), exception.getMessage());
+		});
+		return new DelegatingAuthenticationFailureHandler(handlers,
+				new SimpleUrlAuthenticationFailureHandler("/login?error"));
 	}
 
+	/**
+	 * The password encoder hashes on a bounded executor. A BCrypt strength below
+	 * 4 triggers a calibration against the target duration at startup.
+	 */
 	@Bean
-	PasswordEncoder paswordEncoder() {
-		return new BCryptPasswordEncoder();
+	PasswordEncoder paswordEncoder(@Value("${fsqr.security.bcrypt.strength:-1}") int strength,
+			@Value("${fsqr.security.bcrypt.target-duration:250ms}") Duration targetDuration,
+			@Value("${fsqr.security.hashing.threads:0}") int threads,
+			@Value("${fsqr.security.hashing.queue-capacity:64}") int queueCapacity,
+			@Value("${fsqr.security.hashing.max-wait:5s}") Duration maxWait) {
+		int bcryptStrength = strength < 4 ? PasswordEncoderFactory.calibrateBCryptStrength(targetDuration) : strength;
+		int hashingThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		return new BoundedPasswordEncoder(PasswordEncoderFactory.createDelegatingPasswordEncoder(bcryptStrength),
+				hashingThreads, queueCapacity, maxWait);
 	}
 }
@@ -0,0 +1,108 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import de.futuresqr.server.service.SessionPrincipalCache;
+import de.futuresqr.server.session.JdbcSecurityContextRepository;
+import de.futuresqr.server.session.SignedTokenCodec;
+import de.futuresqr.server.session.TokenRevocationSet;
+import de.futuresqr.server.session.TokenSecurityContextRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Selects the store of the login sessions by <code>fsqr.session.store</code>.
+ * The default <code>jdbc</code> keeps compact sessions in the database shared
+ * by all nodes, <code>servlet</code> keeps the security context in the servlet
+ * session of a single node. The stateless <code>token</code> authenticates
+ * each request by a signed access token, see
+ * {@link TokenSecurityContextRepository}.
+ * 
+ * @author Robert Breunung
+ */
+@Configuration
+@EnableScheduling
+@Slf4j
+public class SessionConfiguration {
+
+	@Bean
+	@ConditionalOnProperty(name = "fsqr.session.store", havingValue = "jdbc", matchIfMissing = true)
+	JdbcSecurityContextRepository jdbcSecurityContextRepository(JdbcTemplate jdbcTemplate,
+			SessionPrincipalCache principalCache,
+			@Value("${fsqr.session.cookie-name:" + JdbcSecurityContextRepository.DEFAULT_COOKIE_NAME
+					+ "}") String cookieName,
+			@Value("${fsqr.session.timeout:30m}") Duration timeout,
+			@Value("${fsqr.session.touch-interval:1m}") Duration touchInterval,
+			@Value("${fsqr.session.cleanup.batch-size:500}") int cleanupBatchSize) {
+		return new JdbcSecurityContextRepository(jdbcTemplate, principalCache, cookieName, timeout, touchInterval,
+				cleanupBatchSize);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "fsqr.session.store", havingValue = "servlet")
+	SecurityContextRepository httpSessionSecurityContextRepository() {
+		return new HttpSessionSecurityContextRepository();
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "fsqr.session.store", havingValue = "token")
+	TokenRevocationSet tokenRevocationSet(@Value("${fsqr.security.token.refresh-ttl:8h}") Duration refreshTtl) {
+		return new TokenRevocationSet(refreshTtl);
+	}
+
+	/**
+	 * Tokens are signed by the first of the keys <code>id:base64-secret</code>.
+	 * Without keys a random key is used, which is neither shared with other nodes
+	 * nor kept over a restart.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "fsqr.session.store", havingValue = "token")
+	TokenSecurityContextRepository tokenSecurityContextRepository(TokenRevocationSet revocationSet,
+			@Value("${fsqr.security.token.keys:}") List<String> keys,
+			@Value("${fsqr.security.token.access-ttl:5m}") Duration accessTtl,
+			@Value("${fsqr.security.token.refresh-ttl:8h}") Duration refreshTtl) {
+		Map<Integer, byte[]> signingKeys = SignedTokenCodec.parseKeys(keys);
+		if (signingKeys.isEmpty()) {
+			log.warn("No token signing keys configured. Tokens are signed by a random key of this node.");
+			byte[] secret = new byte[32];
+			new SecureRandom().nextBytes(secret);
+			signingKeys = Map.of(0, secret);
+		}
+		return new TokenSecurityContextRepository(new SignedTokenCodec(signingKeys), revocationSet, accessTtl,
+				refreshTtl);
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.datasource;
+
+import static org.springframework.http.HttpHeaders.SET_COOKIE;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+import jakarta.persistence.CacheStoreMode;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Routes read-only transactions to a replica and everything else to the
+ * primary data source.
+ * <p>
+ * The replica may lag behind the primary. A write marks the current request
+ * and answers a cookie with the time of the commit, so that later requests of
+ * the same browser within the maximal lag are routed to the primary and see
+ * their own writes. The cookie works with every session store, the login
+ * sessions are not kept in the servlet session. A forged cookie can only move
+ * reads to the primary.
+ * <p>
+ * Caches evicted on change events must not be refilled from a lagging replica.
+ * Their loaders read by {@link #readFromPrimary(Supplier)}, see
+ * {@link PrimaryReads}. Entities read from the replica are not stored in the
+ * second level cache of Hibernate.
+ * <p>
+ * The routing decision requires the transaction to be set up before the
+ * connection is acquired. Wrap this data source in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ * 
+ * @author Robert Breunung
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	public enum Route {
+		PRIMARY, REPLICA
+	}
+
+	/** Request attribute with the instant of the last write. */
+	static final String ATTRIBUTE_LAST_WRITE = ReadWriteRoutingDataSource.class.getName() + ".LAST_WRITE";
+
+	/** Cookie with the epoch milliseconds of the last committed write. */
+	public static final String COOKIE_LAST_WRITE = "FSQRWRITE";
+
+	/** JPA property of the entity manager, see {@link CacheStoreMode}. */
+	private static final String PROPERTY_CACHE_STORE_MODE = "jakarta.persistence.cache.storeMode";
+
+	private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+	private final Clock clock;
+
+	private final Duration maxLag;
+
+	public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag) {
+		this(primary, replica, maxLag, Clock.systemUTC());
+	}
+
+	ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag, Clock clock) {
+		this.clock = clock;
+		this.maxLag = maxLag;
+		setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	@Override
+	protected Route determineCurrentLookupKey() {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			return Route.PRIMARY;
+		}
+		if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			if (PRIMARY_READS.get() != null || isWithinLag()) {
+				return Route.PRIMARY;
+			}
+			bypassEntityCache();
+			return Route.REPLICA;
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			markWrite(false);
+			// the lag starts with the commit
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					markWrite(true);
+				}
+			});
+		} else {
+			markWrite(true);
+		}
+		return Route.PRIMARY;
+	}
+
+	/**
+	 * Route the read-only transactions started by the given reader to the
+	 * primary. A transaction which already acquired a replica connection is not
+	 * rerouted, the reader has to start a new transaction.
+	 */
+	public static <T> T readFromPrimary(Supplier<T> reader) {
+		Boolean previous = PRIMARY_READS.get();
+		PRIMARY_READS.set(Boolean.TRUE);
+		try {
+			return reader.get();
+		} finally {
+			if (previous == null) {
+				PRIMARY_READS.remove();
+			}
+		}
+	}
+
+	/**
+	 * A replica read must not refill the second level cache, which is evicted by
+	 * the write. The connection is acquired before the first statement, so the
+	 * store mode applies to all entities of the transaction.
+	 */
+	private static void bypassEntityCache() {
+		for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+			if (resource instanceof EntityManagerHolder holder) {
+				holder.getEntityManager().setProperty(PROPERTY_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+			}
+		}
+	}
+
+	private boolean isWithinLag() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return false;
+		}
+		Instant lastWrite = (Instant) attributes.getAttribute(ATTRIBUTE_LAST_WRITE, RequestAttributes.SCOPE_REQUEST);
+		if (lastWrite == null) {
+			lastWrite = getLastWriteCookie(attributes);
+		}
+		return lastWrite != null && clock.instant().isBefore(lastWrite.plus(maxLag));
+	}
+
+	/**
+	 * @param committed Answer the cookie for the following requests, otherwise
+	 *                  mark the current request only.
+	 */
+	private void markWrite(boolean committed) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return;
+		}
+		Instant now = clock.instant();
+		attributes.setAttribute(ATTRIBUTE_LAST_WRITE, now, RequestAttributes.SCOPE_REQUEST);
+		if (committed && attributes instanceof ServletRequestAttributes servletAttributes) {
+			writeLastWriteCookie(servletAttributes, now);
+		}
+	}
+
+	private static Instant getLastWriteCookie(RequestAttributes attributes) {
+		if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+			return null;
+		}
+		Cookie cookie = WebUtils.getCookie(servletAttributes.getRequest(), COOKIE_LAST_WRITE);
+		if (cookie == null) {
+			return null;
+		}
+		try {
+			return Instant.ofEpochMilli(Long.parseLong(cookie.getValue()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A response already sent, e.g. by a streaming download, does not get the
+	 * cookie. Its reads may hit the replica.
+	 */
+	private void writeLastWriteCookie(ServletRequestAttributes attributes, Instant lastWrite) {
+		HttpServletResponse response = attributes.getResponse();
+		if (response == null || response.isCommitted()) {
+			return;
+		}
+		HttpServletRequest request = attributes.getRequest();
+		String path = StringUtils.hasLength(request.getContextPath()) ? request.getContextPath() : "/";
+		// the browser counts whole seconds
+		ResponseCookie cookie = ResponseCookie.from(COOKIE_LAST_WRITE, Long.toString(lastWrite.toEpochMilli()))
+				.path(path).httpOnly(true).secure(request.isSecure()).sameSite("Lax").maxAge(maxLag.plusSeconds(1))
+				.build();
+		response.addHeader(SET_COOKIE, cookie.toString());
+	}
+}
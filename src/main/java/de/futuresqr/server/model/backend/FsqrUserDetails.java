@@ -0,0 +1,89 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.backend;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import lombok.Getter;
+
+/**
+ * The authenticated principal of FutureSQR. Besides the credentials it carries
+ * a compact projection of the {@link PersistenceUser}, so that the login answer
+ * does not require another database query.
+ * 
+ * @author Robert Breunung
+ */
+@Getter
+public class FsqrUserDetails extends User {
+
+	private static final long serialVersionUID = 1L;
+
+	private final UUID avatarId;
+	private final Instant bannedDate;
+	private final Instant createdDate;
+	private final String displayName;
+	private final String email;
+	private final Instant lastChangeDate;
+	/** Bit mask of {@link UserRole}. */
+	private final int roles;
+	private final UUID uuid;
+	private final long version;
+
+	public FsqrUserDetails(PersistenceUser sourceUser, Collection<? extends GrantedAuthority> authorities) {
+		super(sourceUser.getLoginName(), sourceUser.getPassword(), true, true, true, !sourceUser.isBanned(),
+				authorities);
+		avatarId = sourceUser.getAvatarId();
+		bannedDate = sourceUser.getBannedDate();
+		createdDate = sourceUser.getCreatedDate();
+		displayName = sourceUser.getDisplayName();
+		email = sourceUser.getEmail();
+		lastChangeDate = sourceUser.getLastChangeDate();
+		roles = sourceUser.getRoles();
+		uuid = sourceUser.getUuid();
+		version = sourceUser.getVersion();
+	}
+
+	/**
+	 * Create a copy with the given password. The copy is independent from
+	 * {@link #eraseCredentials()} of the source.
+	 */
+	public FsqrUserDetails(FsqrUserDetails source, String password) {
+		super(source.getUsername(), password, source.isEnabled(), source.isAccountNonExpired(),
+				source.isCredentialsNonExpired(), source.isAccountNonLocked(), source.getAuthorities());
+		avatarId = source.avatarId;
+		bannedDate = source.bannedDate;
+		createdDate = source.createdDate;
+		displayName = source.displayName;
+		email = source.email;
+		lastChangeDate = source.lastChangeDate;
+		roles = source.roles;
+		uuid = source.uuid;
+		version = source.version;
+	}
+}
@@ -28,33 +28,32 @@ import static lombok.AccessLevel.PRIVATE;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.User.UserBuilder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.provisioning.UserDetailsManager;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
-import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
- * Data model for the user of the FutureSQR application and database.
+ * Data model for the user of the FutureSQR application and database. Users
+ * are cached in the second level cache region {@value #CACHE_REGION}.
  * 
  * @author Robert Breunung
  */
@@ -63,9 +62,13 @@ import lombok.NoArgsConstructor;
 @Builder
 @Data
 @Entity
-//table name 'user' is reserved in databases
-@Table(name = "fsqrUser", uniqueConstraints = { @UniqueConstraint(columnNames = "loginName") })
-public class PersistenceUser {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = PersistenceUser.CACHE_REGION)
+//table name 'user' is reserved in databases; constraints and indexes are part of the migrations
+@Table(name = "fsqrUser")
+public class PersistenceUser implements UserProjection {
+
+	public static final String CACHE_REGION = "fsqrUser";
 
 	private UUID avatarId;
 	private boolean banned;
@@ -75,27 +78,57 @@ public class PersistenceUser {
 	private String displayName;
 	private String email;
 	@Builder.Default
-	private Set<String> grantedAuthorities = new HashSet<>();
-	@Builder.Default
 	private Instant lastChangeDate = Instant.now();
 	@Column(name = "loginName")
 	private String loginName;
 	private String password;
+	/** Bit mask of {@link UserRole}. */
+	@Column(name = "roles", nullable = false)
+	private int roles;
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@TimeOrderedUuid
 	private UUID uuid;
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CACHE_REGION + ".vcsNames")
 	@ElementCollection
 	@Builder.Default
 	private List<String> vcsNames = new ArrayList<>();
+	/** Optimistic lock, exposed to clients as entity tag. */
+	@Version
+	private long version;
+
+	/**
+	 * Replace the roles by the roles of the given authorities.
+	 */
+	public void setGrantedAuthorities(Collection<String> grantedAuthorities) {
+		roles = UserRole.toMask(grantedAuthorities);
+	}
+
+	/**
+	 * Listings are ordered by display name with keyset pagination, which requires
+	 * a non-null value.
+	 */
+	@PrePersist
+	void normalizeDisplayName() {
+		if (displayName == null) {
+			displayName = "";
+		}
+	}
+
+	/**
+	 * The latest change date of all users validates the cached user lists.
+	 */
+	@PreUpdate
+	void onUpdate() {
+		normalizeDisplayName();
+		lastChangeDate = Instant.now();
+	}
 
 	public static PersistenceUser fromUserDetails(UserDetails userDetails) {
 		PersistenceUserBuilder userBuilder = builder().loginName(userDetails.getUsername())
 				.password(userDetails.getPassword()).banned(!userDetails.isAccountNonLocked());
 		Collection<? extends GrantedAuthority> authorities = userDetails.getAuthorities();
 		if (authorities != null) {
-			Set<String> newAuthorities = authorities.stream().map(GrantedAuthority::getAuthority)
-					.collect(Collectors.toSet());
-			userBuilder.grantedAuthorities(newAuthorities);
+			userBuilder.roles(UserRole.toMask(authorities));
 		}
 		return userBuilder.build();
 	}
@@ -103,12 +136,7 @@ public class PersistenceUser {
 	/**
 	 * Create an object used by the {@link UserDetailsManager}.
 	 */
-	public static UserDetails toUserDetails(PersistenceUser sourceUser) {
-		UserBuilder userBuilder = User.builder();
-
-		userBuilder.accountLocked(sourceUser.banned).password(sourceUser.password).username(sourceUser.loginName)
-				.authorities(sourceUser.getGrantedAuthorities().toArray((int i) -> new String[i]));
-
-		return userBuilder.build();
+	public static FsqrUserDetails toUserDetails(PersistenceUser sourceUser) {
+		return new FsqrUserDetails(sourceUser, UserRole.toGrantedAuthorities(sourceUser.getRoles()));
 	}
 }
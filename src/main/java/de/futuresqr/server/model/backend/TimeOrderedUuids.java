@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.backend;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time ordered UUIDs in the layout of version 7 of RFC 9562. The
+ * first 48 bits are the Unix time in milliseconds followed by a 12 bit counter
+ * which keeps the ids monotonic within a millisecond. The remaining 62 bits are
+ * random.
+ * <p>
+ * Consecutive inserts hit the same end of a primary key index instead of
+ * random pages.
+ * 
+ * @author Robert Breunung
+ */
+public final class TimeOrderedUuids {
+
+	private static final int COUNTER_BITS = 12;
+	private static final long VERSION_7 = 0x7000L;
+	private static final long VARIANT_RFC = 0x8000_0000_0000_0000L;
+	private static final long VARIANT_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+	private static final Clock CLOCK = Clock.systemUTC();
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	/** Last used milliseconds shifted by the counter bits plus the counter. */
+	private static final AtomicLong LAST = new AtomicLong();
+
+	private TimeOrderedUuids() {
+	}
+
+	public static UUID next() {
+		return create(LAST, CLOCK.millis(), RANDOM.nextLong());
+	}
+
+	/**
+	 * @return The creation time in milliseconds of a time ordered UUID.
+	 */
+	public static long getMillis(UUID uuid) {
+		return uuid.getMostSignificantBits() >>> 16;
+	}
+
+	/**
+	 * @param last The generator state, see {@link #LAST}.
+	 */
+	static UUID create(AtomicLong last, long millis, long random) {
+		long minimum = millis << COUNTER_BITS;
+		// the counter overflows into the timestamp, which keeps the ids monotonic
+		long timeAndCounter = last.updateAndGet(previous -> Math.max(minimum, previous + 1));
+		long mostSignificantBits = (timeAndCounter >>> COUNTER_BITS) << 16 | VERSION_7
+				| timeAndCounter & ((1L << COUNTER_BITS) - 1);
+		return new UUID(mostSignificantBits, random & VARIANT_MASK | VARIANT_RFC);
+	}
+}
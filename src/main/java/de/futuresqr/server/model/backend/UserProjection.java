@@ -0,0 +1,70 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.backend;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Projection of the columns of {@link PersistenceUser} which are required by
+ * user listings. It omits the password and the element collections, so that a
+ * listing is a single query without further selects per user.
+ * 
+ * @author Robert Breunung
+ */
+public interface UserProjection {
+
+	UUID getAvatarId();
+
+	Instant getBannedDate();
+
+	Instant getCreatedDate();
+
+	String getDisplayName();
+
+	String getEmail();
+
+	/**
+	 * @return The authorities of the {@link #getRoles() roles}.
+	 */
+	default Set<String> getGrantedAuthorities() {
+		return UserRole.toAuthorities(getRoles());
+	}
+
+	Instant getLastChangeDate();
+
+	String getLoginName();
+
+	/**
+	 * @return Bit mask of {@link UserRole}.
+	 */
+	int getRoles();
+
+	UUID getUuid();
+
+	long getVersion();
+
+	boolean isBanned();
+}
@@ -0,0 +1,163 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.backend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * The roles of a FutureSQR user. A user stores its roles as bit mask in a
+ * single integer column, so that role checks are integer tests. The roles are
+ * their own granted authorities, so the mask of an authentication is found
+ * without comparing authority names.
+ * <p>
+ * The bits are persisted and must not change.
+ * 
+ * @author Robert Breunung
+ */
+public enum UserRole implements GrantedAuthority {
+
+	USER(1), ADMIN(1 << 1);
+
+	public static final String PREFIX_ROLE = "ROLE_";
+	/** The name of {@link #ADMIN} as constant for annotations. */
+	public static final String NAME_ADMIN = "ADMIN";
+	/** The name of {@link #USER} as constant for annotations. */
+	public static final String NAME_USER = "USER";
+
+	/** Shared authority lists by mask. */
+	private static final List<List<GrantedAuthority>> AUTHORITIES;
+
+	static {
+		int maskCount = 1 << values().length;
+		List<List<GrantedAuthority>> authorities = new ArrayList<>(maskCount);
+		for (int mask = 0; mask < maskCount; mask++) {
+			List<GrantedAuthority> list = new ArrayList<>();
+			for (UserRole role : values()) {
+				if (role.isGranted(mask)) {
+					list.add(role);
+				}
+			}
+			authorities.add(List.copyOf(list));
+		}
+		AUTHORITIES = List.copyOf(authorities);
+	}
+
+	private final int bit;
+
+	private UserRole(int bit) {
+		this.bit = bit;
+	}
+
+	@Override
+	public String getAuthority() {
+		return PREFIX_ROLE + name();
+	}
+
+	public int getBit() {
+		return bit;
+	}
+
+	public boolean isGranted(int mask) {
+		return (mask & bit) != 0;
+	}
+
+	/**
+	 * @return All masks which grant this role. A role query by these masks can use
+	 *         an index on the mask column.
+	 */
+	public List<Integer> getGrantingMasks() {
+		List<Integer> masks = new ArrayList<>();
+		for (int mask = 0; mask < 1 << values().length; mask++) {
+			if (isGranted(mask)) {
+				masks.add(mask);
+			}
+		}
+		return masks;
+	}
+
+	public static int toMask(UserRole... roles) {
+		int mask = 0;
+		for (UserRole role : roles) {
+			mask |= role.bit;
+		}
+		return mask;
+	}
+
+	/**
+	 * @param authorities Authorities like <code>ROLE_ADMIN</code>. Authorities
+	 *                    without a role are ignored.
+	 */
+	public static int toMask(Collection<String> authorities) {
+		int mask = 0;
+		for (UserRole role : values()) {
+			if (authorities.contains(role.getAuthority())) {
+				mask |= role.bit;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * @param authorities Granted authorities, usually roles. Foreign authorities
+	 *                    are compared by name.
+	 */
+	public static int toMask(Iterable<? extends GrantedAuthority> authorities) {
+		int mask = 0;
+		for (GrantedAuthority authority : authorities) {
+			if (authority instanceof UserRole role) {
+				mask |= role.bit;
+			} else {
+				for (UserRole role : values()) {
+					if (role.getAuthority().equals(authority.getAuthority())) {
+						mask |= role.bit;
+					}
+				}
+			}
+		}
+		return mask;
+	}
+
+	public static Set<String> toAuthorities(int mask) {
+		Set<String> authorities = new LinkedHashSet<>();
+		for (UserRole role : values()) {
+			if (role.isGranted(mask)) {
+				authorities.add(role.getAuthority());
+			}
+		}
+		return authorities;
+	}
+
+	/**
+	 * @return An immutable list shared by all users with the same mask.
+	 */
+	public static List<GrantedAuthority> toGrantedAuthorities(int mask) {
+		return AUTHORITIES.get(mask & (AUTHORITIES.size() - 1));
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.frontend;
+
+import lombok.Value;
+
+/**
+ * Hit and miss counts of a single cache region.
+ * 
+ * @author Robert Breunung
+ */
+@Value
+public class CacheStatisticsDto {
+	private String region;
+	private long hits;
+	private long misses;
+	private long puts;
+	/** Hits per request or -1 without any request. */
+	private double hitratio;
+	/** Entries in memory or -1 if unknown. */
+	private long size;
+
+	public static CacheStatisticsDto of(String region, long hits, long misses, long puts, long size) {
+		long requests = hits + misses;
+		return new CacheStatisticsDto(region, hits, misses, puts, requests == 0 ? -1 : (double) hits / requests,
+				size < 0 ? -1 : size);
+	}
+}
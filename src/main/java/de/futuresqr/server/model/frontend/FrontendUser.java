@@ -27,8 +27,12 @@ import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.springframework.security.core.GrantedAuthority;
+
+import de.futuresqr.server.model.backend.FsqrUserDetails;
 import de.futuresqr.server.model.backend.PersistenceUser;
 import de.futuresqr.server.model.backend.PersistenceUser.PersistenceUserBuilder;
+import de.futuresqr.server.model.backend.UserProjection;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -61,14 +65,33 @@ public class FrontendUser {
 	private long banned;
 	private long modified;
 	private long created;
+	private long version;
 
 	public static FrontendUser fromPersistenceUser(PersistenceUser user) {
+		return fromUserProjection(user);
+	}
+
+	public static FrontendUser fromUserProjection(UserProjection user) {
 		FrontendUserBuilder userBuilder = builder().uuid(user.getUuid()).loginname(user.getLoginName())
 				.displayname(user.getDisplayName())
 				.avatarlocation(user.getAvatarId() == null ? null : user.getAvatarId().toString())
 				.email(user.getEmail()).isbanned(user.isBanned()).modified(user.getLastChangeDate().toEpochMilli())
 				.capabilities(user.getGrantedAuthorities().toArray(String[]::new))
-				.created(user.getCreatedDate().toEpochMilli());
+				.created(user.getCreatedDate().toEpochMilli()).version(user.getVersion());
+		if (user.getBannedDate() != null) {
+			userBuilder.banned(user.getBannedDate().toEpochMilli());
+		}
+		return userBuilder.build();
+	}
+
+	public static FrontendUser fromUserDetails(FsqrUserDetails user) {
+		FrontendUserBuilder userBuilder = builder().uuid(user.getUuid()).loginname(user.getUsername())
+				.displayname(user.getDisplayName())
+				.avatarlocation(user.getAvatarId() == null ? null : user.getAvatarId().toString())
+				.email(user.getEmail()).isbanned(!user.isAccountNonLocked())
+				.modified(user.getLastChangeDate().toEpochMilli())
+				.capabilities(user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toArray(String[]::new))
+				.created(user.getCreatedDate().toEpochMilli()).version(user.getVersion());
 		if (user.getBannedDate() != null) {
 			userBuilder.banned(user.getBannedDate().toEpochMilli());
 		}
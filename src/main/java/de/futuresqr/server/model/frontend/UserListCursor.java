@@ -0,0 +1,71 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.frontend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import lombok.Value;
+
+/**
+ * Position in a user listing ordered by display name and uuid. The frontend
+ * receives it as opaque continuation token.
+ * 
+ * @author Robert Breunung
+ */
+@Value
+public class UserListCursor {
+
+	/** Position before the first user. */
+	public static final UserListCursor FIRST = new UserListCursor("", new UUID(0, 0));
+
+	private static final char SEPARATOR = '\n';
+
+	private String displayName;
+	private UUID uuid;
+
+	/**
+	 * @param token A token created by {@link #toToken()} or <code>null</code>.
+	 * @return The decoded cursor or {@link #FIRST} if no token is given.
+	 * @throws IllegalArgumentException The token is malformed.
+	 */
+	public static UserListCursor fromToken(String token) {
+		if (token == null || token.isBlank()) {
+			return FIRST;
+		}
+		String content = new String(Base64.getUrlDecoder().decode(token), UTF_8);
+		int separator = content.lastIndexOf(SEPARATOR);
+		if (separator < 0) {
+			throw new IllegalArgumentException("Malformed cursor.");
+		}
+		return new UserListCursor(content.substring(0, separator), UUID.fromString(content.substring(separator + 1)));
+	}
+
+	public String toToken() {
+		String content = displayName + SEPARATOR + uuid;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(content.getBytes(UTF_8));
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.rest.admin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.frontend.CacheStatisticsDto;
+import de.futuresqr.server.restdata.UserRepository;
+import de.futuresqr.server.service.SimpleUserLookup;
+import de.futuresqr.server.service.UserDetailsCache;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * This controller provides the hit ratios of the Hibernate second level cache
+ * regions and the application caches in order to tune their sizes.
+ * 
+ * @author Robert Breunung
+ */
+@RestController
+@RequestMapping("/rest/admin")
+public class CacheStatisticsController {
+
+	private static final String REGION_QUERY_RESULTS = "default-query-results-region";
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private SimpleUserLookup simpleUserLookup;
+
+	@Autowired
+	private UserDetailsCache userDetailsCache;
+
+	@GetMapping("/cacheStatistics")
+	public List<CacheStatisticsDto> getCacheStatistics() {
+		List<CacheStatisticsDto> result = new ArrayList<>();
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		Set<String> regions = new LinkedHashSet<>(List.of(statistics.getSecondLevelCacheRegionNames()));
+		regions.add(PersistenceUser.CACHE_REGION);
+		regions.add(UserRepository.CACHE_REGION_BY_LOGIN_NAME);
+		regions.add(REGION_QUERY_RESULTS);
+		for (String region : regions) {
+			CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+			if (regionStatistics != null) {
+				result.add(CacheStatisticsDto.of(region, regionStatistics.getHitCount(),
+						regionStatistics.getMissCount(), regionStatistics.getPutCount(),
+						regionStatistics.getElementCountInMemory()));
+			}
+		}
+
+		result.add(toDto("userDetails", userDetailsCache.getStatistics()));
+		result.add(toDto("simpleUser", simpleUserLookup.getStatistics()));
+		return result;
+	}
+
+	private static CacheStatisticsDto toDto(String region, CacheStats stats) {
+		return CacheStatisticsDto.of(region, stats.hitCount(), stats.missCount(), stats.loadCount(), -1);
+	}
+}
@@ -23,8 +23,6 @@
  */
 package de.futuresqr.server.rest.demo;
 
-import static org.springframework.security.web.context.HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -32,13 +30,15 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import de.futuresqr.server.model.frontend.UserProperties;
+import de.futuresqr.server.session.HmacCsrfTokenRepository;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -54,11 +54,17 @@ public class LoginController {
 	@Autowired
 	AuthenticationConfiguration authenticationConfiguration;
 
+	@Autowired
+	HmacCsrfTokenRepository csrfTokenRepository;
+
+	@Autowired
+	SecurityContextRepository securityContextRepository;
+
 	@PostMapping(path = "/rest/login")
 	ResponseEntity<String> postLogin(
 			@RequestParam(name = UserProperties.LOGIN_NAME, required = false) final String username,
 			@RequestParam(name = UserProperties.PASSWORD, required = false) final String password,
-			final HttpServletRequest request) throws Exception {
+			final HttpServletRequest request, final HttpServletResponse response) throws Exception {
 
 		log.trace("user {} pass {}", username, password);
 
@@ -66,8 +72,8 @@ public class LoginController {
 		Authentication auth = authenticationConfiguration.getAuthenticationManager().authenticate(authReq);
 		SecurityContext sc = SecurityContextHolder.getContext();
 		sc.setAuthentication(auth);
-		HttpSession session = request.getSession(true);
-		session.setAttribute(SPRING_SECURITY_CONTEXT_KEY, sc);
+		securityContextRepository.saveContext(sc, request, response);
+		csrfTokenRepository.issueToken(request, response);
 
 		return ResponseEntity.ok(String.format("user %s pass %s", username, password));
 	}
@@ -33,35 +33,57 @@ import org.springframework.security.web.authentication.AuthenticationSuccessHand
 import org.springframework.util.Assert;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
+import de.futuresqr.server.model.backend.FsqrUserDetails;
 import de.futuresqr.server.model.backend.PersistenceUser;
 import de.futuresqr.server.model.frontend.FrontendUser;
 import de.futuresqr.server.restdata.UserRepository;
+import de.futuresqr.server.session.HmacCsrfTokenRepository;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 /**
- * This handler customizes the answer to the successful authenticated user.
+ * This handler customizes the answer to the successful authenticated user. The
+ * answer is created from the principal loaded during authentication and
+ * written by a shared JSON writer. It carries the CSRF token of the new
+ * session, so the client does not need to request it.
  * 
  * @author Robert Breunung
  */
 public class LoginHandler implements AuthenticationSuccessHandler {
 
+	private final HmacCsrfTokenRepository csrfTokenRepository;
 	private final UserRepository userRepository;
+	private final ObjectWriter userWriter;
 
-	public LoginHandler(UserRepository userRepository) {
+	public LoginHandler(UserRepository userRepository, ObjectMapper objectMapper,
+			HmacCsrfTokenRepository csrfTokenRepository) {
 		Assert.notNull(userRepository, "User repository required.");
+		Assert.notNull(objectMapper, "Object mapper required.");
+		Assert.notNull(csrfTokenRepository, "CSRF token repository required.");
+		this.csrfTokenRepository = csrfTokenRepository;
 		this.userRepository = userRepository;
+		this.userWriter = objectMapper.writerFor(FrontendUser.class);
 	}
 
 	@Override
 	public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
 			Authentication authentication) throws IOException, ServletException {
+		csrfTokenRepository.issueToken(request, response);
 		response.setStatus(OK.value());
 		response.setContentType(APPLICATION_JSON_VALUE);
+		userWriter.writeValue(response.getOutputStream(), getFrontendUser(authentication));
+	}
+
+	private FrontendUser getFrontendUser(Authentication authentication) {
+		if (authentication.getPrincipal() instanceof FsqrUserDetails userDetails) {
+			return FrontendUser.fromUserDetails(userDetails);
+		}
+		// principal of a foreign authentication provider
 		PersistenceUser persistenceUser = userRepository.findByLoginName(authentication.getName()).iterator().next();
-		new ObjectMapper().writeValue(response.getOutputStream(), FrontendUser.fromPersistenceUser(persistenceUser));
+		return FrontendUser.fromPersistenceUser(persistenceUser);
 	}
 
 }
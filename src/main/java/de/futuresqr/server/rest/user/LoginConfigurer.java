@@ -29,6 +29,8 @@ import org.springframework.security.config.annotation.web.configurers.AbstractAu
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * This {@link LoginConfigurer} introduces the {@link LoginFilter} to the
  * {@link HttpSecurity} and provides initial configuration methods.
@@ -42,6 +44,14 @@ public class LoginConfigurer<H extends HttpSecurityBuilder<H>>
 		super(new LoginFilter(), null);
 	}
 
+	/**
+	 * Record the login attempts by their outcome.
+	 */
+	public LoginConfigurer<H> meterRegistry(MeterRegistry registry) {
+		getAuthenticationFilter().setMeterRegistry(registry);
+		return this;
+	}
+
 	@Override
 	protected RequestMatcher createLoginProcessingUrlMatcher(String loginProcessingUrl) {
 		return new AntPathRequestMatcher(loginProcessingUrl, "POST");
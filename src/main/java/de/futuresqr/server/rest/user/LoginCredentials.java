@@ -0,0 +1,157 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.rest.user;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.MediaType;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import de.futuresqr.server.model.frontend.UserProperties;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.Part;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Login name and password of a login request. The body is parsed once per
+ * request and kept as request attribute for all filters.
+ * <p>
+ * Bodies are limited to {@value #MAX_BODY_SIZE} bytes. JSON is read by a
+ * streaming parser and decoded as UTF-8. URL encoded bodies are left to the
+ * parameter parsing of the container, as the login controller reads the same
+ * parameters. A multipart form is only parsed as fallback. The login name is
+ * accepted as <code>username</code> or <code>loginname</code>.
+ *
+ * @author Robert Breunung
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+@Value
+public class LoginCredentials {
+
+	public static final int MAX_BODY_SIZE = 4096;
+
+	private static final String ATTRIBUTE = LoginCredentials.class.getName();
+	private static final LoginCredentials EMPTY = new LoginCredentials(null, null);
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final String USERNAME = UsernamePasswordAuthenticationFilter.SPRING_SECURITY_FORM_USERNAME_KEY;
+
+	private String loginName;
+	private String password;
+
+	/**
+	 * @return The credentials of the request, which are empty if the body cannot
+	 *         be read.
+	 */
+	public static LoginCredentials of(HttpServletRequest request) {
+		LoginCredentials credentials = (LoginCredentials) request.getAttribute(ATTRIBUTE);
+		if (credentials == null) {
+			try {
+				credentials = read(request);
+			} catch (IOException | ServletException | RuntimeException e) {
+				log.debug("Cannot read login credentials.", e);
+				credentials = EMPTY;
+			}
+			request.setAttribute(ATTRIBUTE, credentials);
+		}
+		return credentials;
+	}
+
+	private static LoginCredentials read(HttpServletRequest request) throws IOException, ServletException {
+		String contentType = request.getContentType();
+		MediaType mediaType = contentType == null ? null : MediaType.parseMediaType(contentType);
+		if (MediaType.APPLICATION_JSON.isCompatibleWith(mediaType)) {
+			byte[] body = readBody(request);
+			return body == null ? EMPTY : parseJson(body);
+		}
+		if (MediaType.MULTIPART_FORM_DATA.isCompatibleWith(mediaType)) {
+			return new LoginCredentials(readPart(request, USERNAME, UserProperties.LOGIN_NAME),
+					readPart(request, UserProperties.PASSWORD));
+		}
+		if (request.getContentLengthLong() > MAX_BODY_SIZE) {
+			return EMPTY;
+		}
+		String loginName = request.getParameter(USERNAME);
+		return new LoginCredentials(loginName != null ? loginName : request.getParameter(UserProperties.LOGIN_NAME),
+				request.getParameter(UserProperties.PASSWORD));
+	}
+
+	/**
+	 * @return The body or <code>null</code> if it exceeds the size limit.
+	 */
+	private static byte[] readBody(HttpServletRequest request) throws IOException {
+		if (request.getContentLengthLong() > MAX_BODY_SIZE) {
+			return null;
+		}
+		try (InputStream input = request.getInputStream()) {
+			byte[] body = input.readNBytes(MAX_BODY_SIZE + 1);
+			return body.length > MAX_BODY_SIZE ? null : body;
+		}
+	}
+
+	static LoginCredentials parseJson(byte[] body) throws IOException {
+		String loginName = null;
+		String password = null;
+		try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return EMPTY;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (value != JsonToken.VALUE_STRING) {
+					parser.skipChildren();
+				} else if (USERNAME.equals(field) || UserProperties.LOGIN_NAME.equals(field)) {
+					loginName = parser.getText();
+				} else if (UserProperties.PASSWORD.equals(field)) {
+					password = parser.getText();
+				}
+			}
+		}
+		return new LoginCredentials(loginName, password);
+	}
+
+	private static String readPart(HttpServletRequest request, String... names) throws IOException, ServletException {
+		for (String name : names) {
+			Part part = request.getPart(name);
+			if (part != null) {
+				try (InputStream input = part.getInputStream()) {
+					return new String(input.readNBytes(MAX_BODY_SIZE), UTF_8);
+				}
+			}
+		}
+		return null;
+	}
+}
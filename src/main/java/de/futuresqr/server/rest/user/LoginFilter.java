@@ -23,45 +23,78 @@
  */
 package de.futuresqr.server.rest.user;
 
-import java.io.IOException;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+import java.time.Duration;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
-import de.futuresqr.server.model.frontend.UserProperties;
-import jakarta.servlet.ServletException;
+import de.futuresqr.server.service.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.extern.slf4j.Slf4j;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * This filter overrides the default
  * {@link UsernamePasswordAuthenticationFilter} in order to read user and
- * password from multi part form.
+ * password from a JSON, URL encoded or multi part body, see
+ * {@link LoginCredentials}. With a {@link MeterRegistry} it records the
+ * duration of each login attempt by its outcome.
  *
  * @author Robert Breunung
  */
-@Slf4j
 public class LoginFilter extends UsernamePasswordAuthenticationFilter {
 
+	private Timer failureTimer;
+	private Timer rejectedTimer;
+	private Timer successTimer;
+
 	@Override
-	protected String obtainPassword(HttpServletRequest request) {
+	public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response)
+			throws AuthenticationException {
+		Timer timer = failureTimer;
+		if (timer == null) {
+			return super.attemptAuthentication(request, response);
+		}
+		long start = System.nanoTime();
 		try {
-			byte[] bytes = request.getPart(UserProperties.PASSWORD).getInputStream().readAllBytes();
-			return new String(bytes);
-		} catch (IOException | ServletException e) {
-			log.error("Cannot read password from submit.", e);
+			Authentication authentication = super.attemptAuthentication(request, response);
+			timer = successTimer;
+			return authentication;
+		} catch (PasswordHashingRejectedException e) {
+			timer = rejectedTimer;
+			throw e;
+		} finally {
+			timer.record(System.nanoTime() - start, NANOSECONDS);
 		}
-		return null;
+	}
+
+	@Override
+	protected String obtainPassword(HttpServletRequest request) {
+		return LoginCredentials.of(request).getPassword();
 	}
 
 	@Override
 	protected String obtainUsername(HttpServletRequest request) {
-		try {
-			byte[] bytes = request.getPart("username").getInputStream().readAllBytes();
-			return new String(bytes);
-		} catch (IOException | ServletException e) {
-			log.error("Cannot read login name from submit.", e);
-		}
-		return null;
+		return LoginCredentials.of(request).getLoginName();
 	}
 
+	public void setMeterRegistry(MeterRegistry registry) {
+		failureTimer = createTimer(registry, "failure");
+		rejectedTimer = createTimer(registry, "rejected");
+		successTimer = createTimer(registry, "success");
+	}
+
+	/**
+	 * The timers are registered once and publish a fixed bucket histogram, so
+	 * that recording does not allocate on the request path.
+	 */
+	private static Timer createTimer(MeterRegistry registry, String outcome) {
+		return Timer.builder("fsqr.login").description("Duration of login attempts.").tag("outcome", outcome)
+				.publishPercentileHistogram().minimumExpectedValue(Duration.ofMillis(1))
+				.maximumExpectedValue(Duration.ofSeconds(10)).register(registry);
+	}
 }
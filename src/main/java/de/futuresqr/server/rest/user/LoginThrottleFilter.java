@@ -0,0 +1,84 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.rest.user;
+
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import de.futuresqr.server.service.LoginThrottle;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This filter limits login attempts by the {@link LoginThrottle} before any
+ * password is hashed. Rejected attempts are answered with 429 Too Many
+ * Requests and a Retry-After header.
+ *
+ * @author Robert Breunung
+ */
+@Slf4j
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+	private final RequestMatcher loginRequestMatcher;
+	private final LoginThrottle loginThrottle;
+
+	public LoginThrottleFilter(LoginThrottle loginThrottle, RequestMatcher loginRequestMatcher) {
+		this.loginThrottle = loginThrottle;
+		this.loginRequestMatcher = loginRequestMatcher;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if (loginRequestMatcher.matches(request)) {
+			Duration retryAfter = loginThrottle.tryAcquire(request.getRemoteAddr(),
+					LoginCredentials.of(request).getLoginName());
+			if (retryAfter != null) {
+				log.debug("Login attempt from {} throttled.", request.getRemoteAddr());
+				response.setHeader(RETRY_AFTER, Long.toString(toRetryAfterSeconds(retryAfter)));
+				response.sendError(TOO_MANY_REQUESTS.value(), "Too many login attempts.");
+				return;
+			}
+		}
+		filterChain.doFilter(request, response);
+	}
+
+	/**
+	 * Rounded up, so that a client retrying after the header is not throttled
+	 * again.
+	 */
+	private static long toRetryAfterSeconds(Duration retryAfter) {
+		long seconds = retryAfter.toSeconds();
+		return Math.max(1, retryAfter.minusSeconds(seconds).isZero() ? seconds : seconds + 1);
+	}
+}
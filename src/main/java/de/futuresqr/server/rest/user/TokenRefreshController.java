@@ -0,0 +1,86 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.rest.user;
+
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import de.futuresqr.server.model.backend.FsqrUserDetails;
+import de.futuresqr.server.model.frontend.AccessTokenDto;
+import de.futuresqr.server.service.SessionPrincipalCache;
+import de.futuresqr.server.session.HmacCsrfTokenRepository;
+import de.futuresqr.server.session.SignedTokenCodec.Token;
+import de.futuresqr.server.session.TokenSecurityContextRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Exchanges a refresh token for new tokens in the stateless authentication
+ * mode. Unlike the access token the refresh checks the user, so that banned
+ * users and revoked roles are applied at the latest after the lifetime of an
+ * access token.
+ * <p>
+ * The refresh is exempt from CSRF protection: the refresh cookie is sent to
+ * the refresh path only and not by cross site requests. A refresh answers a
+ * new CSRF token bound to the user.
+ * 
+ * @author Robert Breunung
+ */
+@RestController
+@ConditionalOnProperty(name = "fsqr.session.store", havingValue = "token")
+public class TokenRefreshController {
+
+	@Autowired
+	private HmacCsrfTokenRepository csrfTokenRepository;
+
+	@Autowired
+	private SessionPrincipalCache principalCache;
+
+	@Autowired
+	private TokenSecurityContextRepository tokenRepository;
+
+	@PostMapping(path = TokenSecurityContextRepository.REFRESH_PATH)
+	ResponseEntity<AccessTokenDto> postRefresh(HttpServletRequest request, HttpServletResponse response) {
+		Token refreshToken = tokenRepository.getRefreshToken(request);
+		if (refreshToken == null) {
+			return ResponseEntity.status(UNAUTHORIZED).build();
+		}
+		FsqrUserDetails principal = principalCache.get(refreshToken.getUserUuid());
+		if (principal == null || !principal.isAccountNonLocked()) {
+			return ResponseEntity.status(UNAUTHORIZED).build();
+		}
+
+		String accessToken = tokenRepository.refreshTokens(refreshToken, principal, request, response);
+		// the client was anonymous after its access token expired
+		csrfTokenRepository.issueToken(principal.getUsername(), request, response);
+		return ResponseEntity.ok().cacheControl(CacheControl.noStore())
+				.body(new AccessTokenDto(accessToken, "Bearer", tokenRepository.getAccessTtl().toSeconds()));
+	}
+}
@@ -27,34 +27,46 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Slice;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import de.futuresqr.server.model.backend.PersistenceUser;
 import de.futuresqr.server.model.frontend.FrontendUser;
 import de.futuresqr.server.restdata.UserRepository;
+import de.futuresqr.server.service.UserDirectoryVersion;
 import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * This controller provides information about the current authenticated user.
+ * Conditional requests are answered by the {@link UserDirectoryVersion} without
+ * loading the user.
  * 
  * @author Robert Breunung
  */
 @RestController
 public class UserInfoController {
 
+	@Autowired
+	private UserDirectoryVersion userDirectoryVersion;
+
 	@Autowired
 	private UserRepository userRepository;
 
 	@GetMapping(path = {"/rest/user/info", "/rest/user/reauthenticate"})
-	ResponseEntity<FrontendUser> getUserInfo(HttpServletRequest request) {
+	ResponseEntity<FrontendUser> getUserInfo(HttpServletRequest request, WebRequest webRequest) {
 		String remoteUser = request.getRemoteUser();
 		if (remoteUser != null) {
+			if (userDirectoryVersion.checkNotModified(webRequest, remoteUser)) {
+				return null;
+			}
 			Slice<PersistenceUser> findByLoginName = userRepository.findByLoginName(remoteUser);
 			if (!findByLoginName.isEmpty()) {
 				PersistenceUser user = findByLoginName.iterator().next();
-				return ResponseEntity.ok().contentType(APPLICATION_JSON).body(FrontendUser.fromPersistenceUser(user));
+				return ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate())
+						.contentType(APPLICATION_JSON).body(FrontendUser.fromPersistenceUser(user));
 			}
 
 		}
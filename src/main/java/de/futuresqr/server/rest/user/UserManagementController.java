@@ -29,36 +29,78 @@ import static de.futuresqr.server.model.frontend.UserProperties.EMAIL;
 import static de.futuresqr.server.model.frontend.UserProperties.LOGIN_NAME;
 import static de.futuresqr.server.model.frontend.UserProperties.PASSWORD;
 
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+import java.io.IOException;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import de.futuresqr.server.model.backend.PersistenceUser;
 import de.futuresqr.server.model.backend.PersistenceUser.PersistenceUserBuilder;
+import de.futuresqr.server.model.backend.UserProjection;
+import de.futuresqr.server.model.backend.UserRole;
 import de.futuresqr.server.model.frontend.FrontendUser;
+import de.futuresqr.server.model.frontend.KeysetPage;
 import de.futuresqr.server.model.frontend.SimpleUserDto;
+import de.futuresqr.server.model.frontend.UserEditDto;
+import de.futuresqr.server.model.frontend.UserListCursor;
 import de.futuresqr.server.model.frontend.UserProperties;
 import de.futuresqr.server.restdata.UserRepository;
 import de.futuresqr.server.service.FsqrUserDetailsManager;
+import de.futuresqr.server.service.SimpleUserListSnapshot;
+import de.futuresqr.server.service.SimpleUserLookup;
+import de.futuresqr.server.service.UserBatchService;
+import de.futuresqr.server.service.UserChangedEvent;
+import de.futuresqr.server.service.UserDirectoryVersion;
+import de.futuresqr.server.service.UserImportService;
+import de.futuresqr.server.service.UserListWriter;
+import de.futuresqr.server.service.UserSearchIndex;
+import de.futuresqr.server.service.VcsAuthorResolver;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
- * This class implements basic use cases.
+ * This class implements basic use cases. Changes of a single user answer the
+ * version of the user as entity tag and respect the If-Match header for
+ * optimistic locking.
  * 
  * @author Robert Breunung
  */
@@ -66,24 +108,207 @@ import jakarta.annotation.security.RolesAllowed;
 @RequestMapping("/rest/user")
 public class UserManagementController {
 
+	/** Browsers shall store the lists but revalidate them on every use. */
+	static final String CACHE_CONTROL_REVALIDATE = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+	private static final String GZIP = "gzip";
+	private static final int PAGE_SIZE_MAX = 500;
+
 	@Autowired
 	private PasswordEncoder encoder;
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
 	@SuppressWarnings("unused")
 	private Logger log = LoggerFactory.getLogger(getClass());
 
+	@Autowired
+	private SimpleUserListSnapshot simpleUserListSnapshot;
+
+	@Autowired
+	private SimpleUserLookup simpleUserLookup;
+
+	@Autowired
+	private UserBatchService userBatchService;
+
+	@Autowired
+	private UserDirectoryVersion userDirectoryVersion;
+
+	@Autowired
+	private UserImportService userImportService;
+
+	@Autowired
+	private UserListWriter userListWriter;
+
+	@Autowired
+	private UserSearchIndex userSearchIndex;
+
+	@Autowired
+	private VcsAuthorResolver vcsAuthorResolver;
+
 	@Autowired
 	private UserRepository userRepo;
 
+	/** Upper bound of ids or authors resolved by one request. */
+	@Value("${fsqr.user.lookup.max-ids:2000}")
+	private int lookupMaxIds;
+
 	@GetMapping("/adminUserList")
-	List<FrontendUser> getAdminUserList() {
-		List<PersistenceUser> page = userRepo.findAll();
-		return page.stream().map(FrontendUser::fromPersistenceUser).toList();
+	void getAdminUserList(HttpServletResponse response, WebRequest request) throws IOException {
+		response.setHeader(CACHE_CONTROL, CACHE_CONTROL_REVALIDATE);
+		if (userDirectoryVersion.checkNotModified(request)) {
+			return;
+		}
+		response.setContentType(APPLICATION_JSON_VALUE);
+		userListWriter.writeAdminUserList(response.getOutputStream());
 	}
 
+	/**
+	 * Keyset paginated admin user list ordered by display name.
+	 */
+	@GetMapping("/adminUserList/page")
+	ResponseEntity<KeysetPage<FrontendUser>> getAdminUserPage(
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "50") int size) {
+		UserListCursor position;
+		try {
+			position = UserListCursor.fromToken(cursor);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		int pageSize = getPageSize(size);
+		List<UserProjection> rows = userRepo.findUserProjectionsAfter(position.getDisplayName(), position.getUuid(),
+				PageRequest.ofSize(pageSize + 1));
+		return ResponseEntity.ok(toPage(rows, pageSize, u -> new UserListCursor(u.getDisplayName(), u.getUuid()),
+				FrontendUser::fromUserProjection));
+	}
+
+	/**
+	 * The simple user list is served from the pre-serialized snapshot, if it is
+	 * up to date.
+	 */
 	@GetMapping({ "/simpleList" })
-	List<SimpleUserDto> getSimpleUserList() {
-		List<PersistenceUser> page = userRepo.findAll();
-		return page.stream().map(SimpleUserDto::fromPersistenceUser).toList();
+	void getSimpleUserList(HttpServletResponse response, WebRequest request) throws IOException {
+		response.setHeader(CACHE_CONTROL, CACHE_CONTROL_REVALIDATE);
+		response.setHeader(VARY, ACCEPT_ENCODING);
+		boolean gzip = acceptsGzip(request.getHeader(ACCEPT_ENCODING));
+		if (gzip ? userDirectoryVersion.checkNotModifiedEncoded(request, GZIP)
+				: userDirectoryVersion.checkNotModified(request)) {
+			return;
+		}
+		response.setContentType(APPLICATION_JSON_VALUE);
+		if (gzip) {
+			response.setHeader(CONTENT_ENCODING, GZIP);
+		}
+		SimpleUserListSnapshot.Content snapshot = simpleUserListSnapshot.getCurrent();
+		if (snapshot == null) {
+			if (gzip) {
+				try (GZIPOutputStream output = new GZIPOutputStream(response.getOutputStream())) {
+					userListWriter.writeSimpleUserList(output);
+				}
+			} else {
+				userListWriter.writeSimpleUserList(response.getOutputStream());
+			}
+			return;
+		}
+		byte[] body = gzip ? snapshot.getGzip() : snapshot.getIdentity();
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+	}
+
+	/**
+	 * @param acceptEncoding The header value, e.g. <code>gzip;q=0.8, br</code>.
+	 * @return <code>true</code> if gzip is accepted by name or wildcard with a
+	 *         quality above 0.
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		boolean wildcard = false;
+		for (String coding : StringUtils.tokenizeToStringArray(acceptEncoding, ",")) {
+			String[] parameters = StringUtils.tokenizeToStringArray(coding, ";");
+			if (parameters.length == 0) {
+				continue;
+			}
+			boolean accepted = true;
+			for (int i = 1; i < parameters.length; i++) {
+				if (parameters[i].regionMatches(true, 0, "q=", 0, 2)) {
+					try {
+						accepted = Double.parseDouble(parameters[i].substring(2).trim()) > 0;
+					} catch (NumberFormatException e) {
+						accepted = false;
+					}
+				}
+			}
+			if (GZIP.equalsIgnoreCase(parameters[0]) || "x-gzip".equalsIgnoreCase(parameters[0])) {
+				return accepted;
+			}
+			if ("*".equals(parameters[0])) {
+				wildcard = accepted;
+			}
+		}
+		return wildcard;
+	}
+
+	/**
+	 * Keyset paginated simple user list ordered by display name.
+	 */
+	@GetMapping("/simpleList/page")
+	ResponseEntity<KeysetPage<SimpleUserDto>> getSimpleUserPage(
+			@RequestParam(name = "cursor", required = false) String cursor,
+			@RequestParam(name = "size", defaultValue = "50") int size) {
+		UserListCursor position;
+		try {
+			position = UserListCursor.fromToken(cursor);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		int pageSize = getPageSize(size);
+		List<SimpleUserDto> rows = userRepo.findSimpleUsersAfter(position.getDisplayName(), position.getUuid(),
+				PageRequest.ofSize(pageSize + 1));
+		return ResponseEntity.ok(toPage(rows, pageSize, u -> new UserListCursor(u.getDisplayname(), u.getUuid()),
+				Function.identity()));
+	}
+
+	/**
+	 * Type ahead search for user pickers. Matches login name, display name, email
+	 * and VCS names.
+	 */
+	@GetMapping("/search")
+	ResponseEntity<List<SimpleUserDto>> getSearchUsers(@RequestParam("q") String query,
+			@RequestParam(name = "limit", defaultValue = "20") int limit,
+			@RequestParam(name = "banned", defaultValue = "false") boolean includeBanned) {
+		return ResponseEntity.ok(userSearchIndex.search(query, limit, includeBanned));
+	}
+
+	/**
+	 * Resolve many user ids at once, e.g. the authors and reviewers of a review.
+	 * 
+	 * @return The known users in order of the given ids. Unknown ids and
+	 *         duplicates are omitted. Bad request for more ids than configured.
+	 */
+	@PostMapping("/byIds")
+	ResponseEntity<List<SimpleUserDto>> postSimpleUsersByIds(@RequestBody List<UUID> uuids) {
+		if (uuids.size() > lookupMaxIds) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(simpleUserLookup.findListByIds(uuids));
+	}
+
+	/**
+	 * Resolve commit authors to users by their VCS names.
+	 * 
+	 * @param authors Authors like <code>jdoe</code> or <code>John Doe
+	 *                &lt;jdoe@example.org&gt;</code>.
+	 * @return The user ids of all resolvable authors by author. Bad request for
+	 *         more authors than configured.
+	 */
+	@PostMapping("/vcsAuthors")
+	ResponseEntity<Map<String, UUID>> postResolveVcsAuthors(@RequestBody List<String> authors) {
+		if (authors.size() > lookupMaxIds) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(vcsAuthorResolver.resolveAll(authors));
 	}
 
 	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
@@ -94,38 +319,80 @@ public class UserManagementController {
 		Assert.hasLength(password, "Password requires content.");
 		Assert.isTrue(userRepo.findByLoginName(loginName).isEmpty(), "User with same login exists.");
 
-		HashSet<String> roles = new HashSet<>();
-		roles.add(FsqrUserDetailsManager.PREFIX_ROLE + FsqrUserDetailsManager.ROLE_USER);
-
 		PersistenceUserBuilder userBuilder = PersistenceUser.builder().loginName(loginName)
-				.password(encoder.encode(password)).grantedAuthorities(roles).email(email).displayName(displayName);
+				.password(encoder.encode(password)).roles(UserRole.toMask(UserRole.USER)).email(email)
+				.displayName(displayName);
 		PersistenceUser persistenceUser = userBuilder.build();
-		persistenceUser = userRepo.save(persistenceUser);
+		persistenceUser = saveUser(persistenceUser);
 
 		return ResponseEntity.ok(FrontendUser.fromPersistenceUser(persistenceUser));
 	}
 
+	/**
+	 * Create many users from CSV or new line delimited JSON. The result of every
+	 * row is streamed back as new line delimited JSON.
+	 */
+	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
+	@PostMapping(path = "/import", consumes = { APPLICATION_NDJSON_VALUE,
+			UserImportService.MEDIA_TYPE_CSV }, produces = APPLICATION_NDJSON_VALUE)
+	void postImportUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		UserImportService.Format format = MediaType.parseMediaType(request.getContentType())
+				.isCompatibleWith(MediaType.parseMediaType(UserImportService.MEDIA_TYPE_CSV))
+						? UserImportService.Format.CSV
+						: UserImportService.Format.NDJSON;
+		response.setContentType(APPLICATION_NDJSON_VALUE);
+		userImportService.importUsers(request.getInputStream(), format, response.getOutputStream());
+	}
+
 	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
 	@PostMapping({ "/ban" })
-	ResponseEntity<FrontendUser> postBanUser(@RequestPart(UserProperties.UUID) String uuid) {
+	ResponseEntity<FrontendUser> postBanUser(@RequestPart(UserProperties.UUID) String uuid,
+			@RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
 
 		PersistenceUser persistenceUser = userRepo.getReferenceById(UUID.fromString(uuid));
 		if (persistenceUser == null) {
 			return ResponseEntity.notFound().build();
 		}
+		if (!matchesVersion(persistenceUser, ifMatch)) {
+			return ResponseEntity.status(PRECONDITION_FAILED).build();
+		}
 		final Instant now = Instant.now();
 		persistenceUser.setLastChangeDate(now);
 		setBanned(persistenceUser, now, true);
-		persistenceUser = userRepo.save(persistenceUser);
-		return ResponseEntity.ok(FrontendUser.fromPersistenceUser(persistenceUser));
+		persistenceUser = saveUser(persistenceUser);
+		return toResponse(persistenceUser);
+	}
+
+	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
+	@PostMapping("/batch/ban")
+	ResponseEntity<List<FrontendUser>> postBatchBanUsers(@RequestBody List<UUID> uuids) {
+		return ResponseEntity.ok(userBatchService.ban(uuids).stream().map(FrontendUser::fromPersistenceUser).toList());
+	}
+
+	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
+	@PostMapping("/batch/edit")
+	ResponseEntity<List<FrontendUser>> postBatchEditUsers(@RequestBody List<UserEditDto> edits) {
+		return ResponseEntity
+				.ok(userBatchService.edit(edits).stream().map(FrontendUser::fromPersistenceUser).toList());
+	}
+
+	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
+	@PostMapping("/batch/unban")
+	ResponseEntity<List<FrontendUser>> postBatchUnbanUsers(@RequestBody List<UUID> uuids) {
+		return ResponseEntity
+				.ok(userBatchService.unban(uuids).stream().map(FrontendUser::fromPersistenceUser).toList());
 	}
 
 	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
 	@PostMapping("/edit")
 	ResponseEntity<FrontendUser> postEditUser(@RequestPart(UserProperties.UUID) String uuid,
-			@RequestPart(DISPLAY_NAME) Optional<String> displayName, @RequestPart(BANNED) Optional<Boolean> isBanned) {
+			@RequestPart(DISPLAY_NAME) Optional<String> displayName, @RequestPart(BANNED) Optional<Boolean> isBanned,
+			@RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
 
 		final PersistenceUser persistenceUser = userRepo.getReferenceById(UUID.fromString(uuid));
+		if (!matchesVersion(persistenceUser, ifMatch)) {
+			return ResponseEntity.status(PRECONDITION_FAILED).build();
+		}
 		final Instant now = Instant.now();
 
 		displayName.ifPresent(persistenceUser::setDisplayName);
@@ -134,49 +401,131 @@ public class UserManagementController {
 			setBanned(persistenceUser, now, b);
 		});
 
-		return ResponseEntity.ok(FrontendUser.fromPersistenceUser(userRepo.save(persistenceUser)));
+		return toResponse(saveUser(persistenceUser));
 	}
 
 	@RolesAllowed(FsqrUserDetailsManager.ROLE_ADMIN)
 	@PostMapping({ "/unban" })
-	ResponseEntity<FrontendUser> postUnbanUser(@RequestPart(UserProperties.UUID) String uuid) {
+	ResponseEntity<FrontendUser> postUnbanUser(@RequestPart(UserProperties.UUID) String uuid,
+			@RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
 
 		PersistenceUser persistenceUser = userRepo.getReferenceById(UUID.fromString(uuid));
 		if (persistenceUser == null) {
 			return ResponseEntity.notFound().build();
 		}
+		if (!matchesVersion(persistenceUser, ifMatch)) {
+			return ResponseEntity.status(PRECONDITION_FAILED).build();
+		}
 
 		final Instant now = Instant.now();
 		persistenceUser.setLastChangeDate(now);
 		setBanned(persistenceUser, now, false);
-		persistenceUser = userRepo.save(persistenceUser);
-		return ResponseEntity.ok(FrontendUser.fromPersistenceUser(persistenceUser));
+		persistenceUser = saveUser(persistenceUser);
+		return toResponse(persistenceUser);
 	}
 
 	@PostMapping({ "/updateEmail" })
 	ResponseEntity<FrontendUser> postUpdateContact(@RequestParam(UserProperties.UUID) String uuid,
-			@RequestParam(EMAIL) String email) {
+			@RequestParam(EMAIL) String email, @RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
 
-		PersistenceUser persistenceUser = userRepo.getReferenceById(UUID.fromString(uuid));
-		if (persistenceUser == null) {
-			return ResponseEntity.notFound().build();
-		}
-		persistenceUser.setEmail(email);
-		PersistenceUser updatedPersistenceUser = userRepo.save(persistenceUser);
-		return ResponseEntity.ok(FrontendUser.fromPersistenceUser(updatedPersistenceUser));
+		return updateUser(UUID.fromString(uuid), ifMatch, u -> u.setEmail(email));
 	}
 
 	@PostMapping({ "/updateDisplayName" })
 	ResponseEntity<FrontendUser> postUpdateDisplayName(@RequestParam(UserProperties.UUID) String uuid,
-			@RequestParam(DISPLAY_NAME) String displayName) {
+			@RequestParam(DISPLAY_NAME) String displayName,
+			@RequestHeader(name = IF_MATCH, required = false) String ifMatch) {
 
-		final PersistenceUser persistenceUser = userRepo.getReferenceById(UUID.fromString(uuid));
-		if (persistenceUser == null) {
+		return updateUser(UUID.fromString(uuid), ifMatch, u -> u.setDisplayName(displayName));
+	}
+
+	/**
+	 * A concurrent change between loading and saving a user.
+	 */
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	ResponseEntity<Void> handleOptimisticLockingFailure() {
+		return ResponseEntity.status(PRECONDITION_FAILED).build();
+	}
+
+	/**
+	 * @param ifMatch The entity tag given by the If-Match header.
+	 * @return The expected version or <code>null</code> if any version matches.
+	 * @throws IllegalArgumentException The entity tag is not a version.
+	 */
+	static Long getExpectedVersion(String ifMatch) {
+		if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+			return null;
+		}
+		String eTag = ifMatch.trim();
+		if (eTag.startsWith("W/")) {
+			eTag = eTag.substring(2);
+		}
+		if (eTag.length() >= 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+			eTag = eTag.substring(1, eTag.length() - 1);
+		}
+		return Long.valueOf(eTag);
+	}
+
+	private boolean matchesVersion(PersistenceUser persistenceUser, String ifMatch) {
+		try {
+			Long expectedVersion = getExpectedVersion(ifMatch);
+			return expectedVersion == null || expectedVersion == persistenceUser.getVersion();
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private ResponseEntity<FrontendUser> toResponse(PersistenceUser persistenceUser) {
+		return ResponseEntity.ok().eTag(Long.toString(persistenceUser.getVersion()))
+				.body(FrontendUser.fromPersistenceUser(persistenceUser));
+	}
+
+	/**
+	 * Apply a change to a single user and answer the updated user. The change is
+	 * an entity update, so that the second level cache replaces only this user.
+	 * A concurrent change fails the versioned update with a precondition failure.
+	 * 
+	 * @param update Changes the loaded user.
+	 */
+	private ResponseEntity<FrontendUser> updateUser(UUID uuid, String ifMatch, Consumer<PersistenceUser> update) {
+		Optional<PersistenceUser> persistenceUser = userRepo.findById(uuid);
+		if (persistenceUser.isEmpty()) {
 			return ResponseEntity.notFound().build();
 		}
-		persistenceUser.setDisplayName(displayName);
-		PersistenceUser updatedPersistenceUser = userRepo.save(persistenceUser);
-		return ResponseEntity.ok(FrontendUser.fromPersistenceUser(updatedPersistenceUser));
+		if (!matchesVersion(persistenceUser.get(), ifMatch)) {
+			return ResponseEntity.status(PRECONDITION_FAILED).build();
+		}
+		update.accept(persistenceUser.get());
+		return toResponse(saveUser(persistenceUser.get()));
+	}
+
+	private int getPageSize(int requestedSize) {
+		return Math.min(Math.max(requestedSize, 1), PAGE_SIZE_MAX);
+	}
+
+	/**
+	 * The rows contain one element more than the page size if a following page
+	 * exists.
+	 */
+	private <S, T> KeysetPage<T> toPage(List<S> rows, int pageSize, Function<S, UserListCursor> cursor,
+			Function<S, T> mapper) {
+		List<S> pageRows = rows;
+		String next = null;
+		if (rows.size() > pageSize) {
+			pageRows = rows.subList(0, pageSize);
+			next = cursor.apply(pageRows.get(pageSize - 1)).toToken();
+		}
+		return new KeysetPage<>(pageRows.stream().map(mapper).toList(), next);
+	}
+
+	/**
+	 * Save the user and inform all listeners about the change, e.g. to evict the
+	 * user details cache.
+	 */
+	private PersistenceUser saveUser(PersistenceUser persistenceUser) {
+		PersistenceUser savedUser = userRepo.save(persistenceUser);
+		eventPublisher.publishEvent(new UserChangedEvent(savedUser.getUuid(), savedUser.getLoginName()));
+		return savedUser;
 	}
 
 	private void setBanned(final PersistenceUser persistenceUser, final Instant now, boolean b) {
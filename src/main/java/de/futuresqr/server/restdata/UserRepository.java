@@ -23,29 +23,88 @@
  */
 package de.futuresqr.server.restdata;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.transaction.annotation.Transactional;
 
 import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserDirectoryState;
+import de.futuresqr.server.model.backend.UserProjection;
+import de.futuresqr.server.model.backend.UserRole;
+import de.futuresqr.server.model.backend.UserVcsName;
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+import jakarta.persistence.QueryHint;
 
 /**
- * This is the user database of FutureSQR.
+ * This is the user database of FutureSQR. Queries are read-only transactions,
+ * which may be routed to a replica.
  * 
  * @author Robert Breunung
  */
 @RepositoryRestResource(collectionResourceRel = "user", path = "user")
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<PersistenceUser, UUID> {
 
+	public static final String CACHE_REGION_BY_LOGIN_NAME = PersistenceUser.CACHE_REGION + ".byLoginName";
+
+	/**
+	 * Ban all given users. The date of an existing ban is kept.
+	 * <p>
+	 * Like every bulk statement it evicts the whole entity cache region of the
+	 * users. Bans are rare administrative batches, a single statement for the
+	 * batch is worth refilling the region. Changes of single users are entity
+	 * updates, which replace only the cached user.
+	 * 
+	 * @return Number of updated users.
+	 */
+	@Modifying(clearAutomatically = true, flushAutomatically = true)
+	@Query("update PersistenceUser u set u.banned = true, u.bannedDate = coalesce(u.bannedDate, :now),"
+			+ " u.lastChangeDate = :now, u.version = u.version + 1 where u.uuid in :uuids")
+	@RestResource(exported = false)
+	@Transactional
+	public int banAll(@Param("uuids") Collection<UUID> uuids, @Param("now") Instant now);
+
+	/**
+	 * @param roles Role masks, see {@link UserRole#getGrantingMasks()}.
+	 */
+	@RestResource(exported = false)
+	public List<PersistenceUser> findByRolesIn(@Param("roles") Collection<Integer> roles);
+
+	/**
+	 * All users with the given role by an indexed lookup of the role masks.
+	 */
+	public default List<PersistenceUser> findByRole(UserRole role) {
+		return findByRolesIn(role.getGrantingMasks());
+	}
+
 	@RestResource(path = "nameContains")
 	public Page<PersistenceUser> findByDisplayNameContaining(@Param("displayName") String displayName, Pageable p);
 
+	/**
+	 * The result is cached in the query cache region
+	 * {@value #CACHE_REGION_BY_LOGIN_NAME}.
+	 */
+	@QueryHints({ @QueryHint(name = HINT_CACHEABLE, value = "true"),
+			@QueryHint(name = HINT_CACHE_REGION, value = CACHE_REGION_BY_LOGIN_NAME) })
 	@RestResource(path = "loginContains")
 	public Slice<PersistenceUser> findByLoginName(@Param("loginName") String loginName);
 
@@ -57,4 +116,113 @@ public interface UserRepository extends JpaRepository<PersistenceUser, UUID> {
 	 */
 	@RestResource(path = "login")
 	public Slice<PersistenceUser> findByLoginNameContaining(@Param("loginName") String loginName);
+
+	/**
+	 * Remove the ban of all given users. Evicts the whole entity cache region, see
+	 * {@link #banAll(Collection, Instant)}.
+	 * 
+	 * @return Number of updated users.
+	 */
+	@Modifying(clearAutomatically = true, flushAutomatically = true)
+	@Query("update PersistenceUser u set u.banned = false, u.bannedDate = null, u.lastChangeDate = :now,"
+			+ " u.version = u.version + 1 where u.uuid in :uuids")
+	@RestResource(exported = false)
+	@Transactional
+	public int unbanAll(@Param("uuids") Collection<UUID> uuids, @Param("now") Instant now);
+
+	/**
+	 * @return The number of users and their latest change.
+	 */
+	@Query("select count(u) as userCount, max(u.lastChangeDate) as lastChangeDate from PersistenceUser u")
+	@RestResource(exported = false)
+	public UserDirectoryState findDirectoryState();
+
+	/**
+	 * @return The users changed at or after the given instant, e.g. by another
+	 *         node.
+	 */
+	@Query("select u.uuid from PersistenceUser u where u.lastChangeDate >= :since")
+	@RestResource(exported = false)
+	public List<UUID> findUuidsChangedSince(@Param("since") Instant since);
+
+	/**
+	 * @return The VCS names of the given users.
+	 */
+	@Query("select u.uuid as uuid, v as vcsName from PersistenceUser u join u.vcsNames v where u.uuid in :uuids")
+	@RestResource(exported = false)
+	public List<UserVcsName> findVcsNamesByUuids(@Param("uuids") Collection<UUID> uuids);
+
+	/**
+	 * @return The subset of the given login names which is already in use.
+	 */
+	@Query("select u.loginName from PersistenceUser u where u.loginName in :loginNames")
+	@RestResource(exported = false)
+	public Set<String> findExistingLoginNames(@Param("loginNames") Collection<String> loginNames);
+
+	/**
+	 * @return The simple users of the given ids. Unknown ids are omitted.
+	 */
+	@Query("select new de.futuresqr.server.model.frontend.SimpleUserDto(u.uuid, u.displayName, u.avatarId)"
+			+ " from PersistenceUser u where u.uuid in :uuids")
+	@RestResource(exported = false)
+	public List<SimpleUserDto> findSimpleUsersByIds(@Param("uuids") Collection<UUID> uuids);
+
+	/**
+	 * Keyset pagination of the simple user list ordered by display name and uuid.
+	 * The first page starts after an empty display name and the zero uuid. Only
+	 * the page size of the {@link Pageable} shall be used.
+	 */
+	@Query("select new de.futuresqr.server.model.frontend.SimpleUserDto(u.uuid, u.displayName, u.avatarId)"
+			+ " from PersistenceUser u where u.displayName > :displayName"
+			+ " or (u.displayName = :displayName and u.uuid > :uuid) order by u.displayName, u.uuid")
+	@RestResource(exported = false)
+	public List<SimpleUserDto> findSimpleUsersAfter(@Param("displayName") String displayName,
+			@Param("uuid") UUID uuid, Pageable p);
+
+	/**
+	 * Keyset pagination of the admin user list. See
+	 * {@link #findSimpleUsersAfter(String, UUID, Pageable)}.
+	 */
+	@Query("select u.avatarId as avatarId, u.banned as banned, u.bannedDate as bannedDate,"
+			+ " u.createdDate as createdDate, u.displayName as displayName, u.email as email,"
+			+ " u.lastChangeDate as lastChangeDate, u.loginName as loginName, u.roles as roles,"
+			+ " u.uuid as uuid, u.version as version"
+			+ " from PersistenceUser u"
+			+ " where u.displayName > :displayName or (u.displayName = :displayName and u.uuid > :uuid)"
+			+ " order by u.displayName, u.uuid")
+	@RestResource(exported = false)
+	public List<UserProjection> findUserProjectionsAfter(@Param("displayName") String displayName,
+			@Param("uuid") UUID uuid, Pageable p);
+
+	/**
+	 * Stream the columns required by the admin user list. The stream must be
+	 * consumed and closed within a transaction.
+	 */
+	@Query("select u.avatarId as avatarId, u.banned as banned, u.bannedDate as bannedDate,"
+			+ " u.createdDate as createdDate, u.displayName as displayName, u.email as email,"
+			+ " u.lastChangeDate as lastChangeDate, u.loginName as loginName, u.roles as roles,"
+			+ " u.uuid as uuid, u.version as version"
+			+ " from PersistenceUser u")
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+	@RestResource(exported = false)
+	public Stream<UserProjection> streamUserProjections();
+
+	/**
+	 * Stream the simple user list. The stream must be consumed and closed within a
+	 * transaction.
+	 */
+	@Query("select new de.futuresqr.server.model.frontend.SimpleUserDto(u.uuid, u.displayName, u.avatarId)"
+			+ " from PersistenceUser u")
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+	@RestResource(exported = false)
+	public Stream<SimpleUserDto> streamSimpleUsers();
+
+	/**
+	 * Stream the VCS names of all users. The stream must be consumed and closed
+	 * within a transaction.
+	 */
+	@Query("select u.uuid as uuid, v as vcsName from PersistenceUser u join u.vcsNames v")
+	@QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+	@RestResource(exported = false)
+	public Stream<UserVcsName> streamVcsNames();
 }
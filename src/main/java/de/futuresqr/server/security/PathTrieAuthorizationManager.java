@@ -0,0 +1,230 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.security;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import de.futuresqr.server.model.backend.UserRole;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Authorization of requests by rules compiled into a trie of path segments.
+ * Like a sequence of <code>antMatchers</code> the first declared rule
+ * matching a request decides, but the rule is found by a single walk along the
+ * segments of the path instead of matching every pattern.
+ * <p>
+ * Patterns consist of literal segments and may end with <code>/**</code>,
+ * which matches the path itself and all paths below. As with the
+ * <code>AntPathRequestMatcher</code>, a path with a trailing slash is matched
+ * by <code>/**</code> patterns only. Empty segments are ignored. Requests
+ * without a matching rule are denied, because the <code>AuthorizationFilter</code>
+ * would grant an undecided request.
+ * 
+ * @author Robert Breunung
+ */
+public class PathTrieAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+	private static final String ANY_PATH = "/**";
+	private static final AuthorizationDecision DENY = new AuthorizationDecision(false);
+	private static final AuthorizationManager<RequestAuthorizationContext> DENY_ALL = (authentication,
+			context) -> DENY;
+	private static final AuthorizationManager<RequestAuthorizationContext> PERMIT_ALL = (authentication,
+			context) -> new AuthorizationDecision(true);
+
+	public static class Builder {
+
+		private final Node root = new Node();
+		private int order;
+
+		public Builder permitAll(String... patterns) {
+			return rule(null, PERMIT_ALL, patterns);
+		}
+
+		public Builder denyAll(String... patterns) {
+			return rule(null, DENY_ALL, patterns);
+		}
+
+		public Builder authenticated(String... patterns) {
+			return rule(null, AuthenticatedAuthorizationManager.authenticated(), patterns);
+		}
+
+		public Builder hasRole(UserRole role, String... patterns) {
+			return rule(null, UserRoleAuthorizationManager.hasAnyRole(role), patterns);
+		}
+
+		/**
+		 * @param method  The HTTP method of the rule or <code>null</code> for all
+		 *                methods.
+		 * @param manager Decides the requests matching the rule.
+		 */
+		public Builder rule(HttpMethod method, AuthorizationManager<RequestAuthorizationContext> manager,
+				String... patterns) {
+			Assert.notNull(manager, "Authorization manager required.");
+			for (String pattern : patterns) {
+				add(new Rule(order++, method, manager), pattern);
+			}
+			return this;
+		}
+
+		public PathTrieAuthorizationManager build() {
+			return new PathTrieAuthorizationManager(root, order);
+		}
+
+		private void add(Rule rule, String pattern) {
+			Assert.isTrue(pattern.startsWith("/"), () -> "Pattern must start with a slash: " + pattern);
+			boolean anyPath = pattern.endsWith(ANY_PATH);
+			String path = anyPath ? pattern.substring(0, pattern.length() - ANY_PATH.length()) : pattern;
+			Node node = root;
+			for (String segment : StringUtils.tokenizeToStringArray(path, "/")) {
+				Assert.isTrue(!segment.contains("*") && !segment.contains("{"),
+						() -> "Only literal segments and a trailing /** are supported: " + pattern);
+				node = node.children.computeIfAbsent(segment, key -> new Node());
+			}
+			if (anyPath) {
+				node.anyPathRules = append(node.anyPathRules, rule);
+			} else {
+				node.exactRules = append(node.exactRules, rule);
+			}
+		}
+
+		private static Rule[] append(Rule[] rules, Rule rule) {
+			Rule[] result = Arrays.copyOf(rules, rules.length + 1);
+			result[rules.length] = rule;
+			return result;
+		}
+	}
+
+	private static class Node {
+		Map<String, Node> children = new HashMap<>();
+		Rule[] anyPathRules = new Rule[0];
+		Rule[] exactRules = new Rule[0];
+	}
+
+	private static class Rule {
+		final int order;
+		final HttpMethod method;
+		final AuthorizationManager<RequestAuthorizationContext> manager;
+
+		Rule(int order, HttpMethod method, AuthorizationManager<RequestAuthorizationContext> manager) {
+			this.order = order;
+			this.method = method;
+			this.manager = manager;
+		}
+
+		boolean matches(String requestMethod) {
+			return method == null || method.matches(requestMethod);
+		}
+	}
+
+	private final Node root;
+	private final int size;
+
+	private PathTrieAuthorizationManager(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+		Rule rule = findRule(context.getRequest());
+		return rule != null ? rule.manager.check(authentication, context) : DENY;
+	}
+
+	/**
+	 * @return The number of patterns.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private Rule findRule(HttpServletRequest request) {
+		String path = getRequestPath(request);
+		String method = request.getMethod();
+		Rule best = first(root.anyPathRules, method, null);
+		Node node = root;
+		int length = path.length();
+		int start = 0;
+		while (start < length) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = length;
+			}
+			if (end > start) {
+				node = node.children.get(path.substring(start, end));
+				if (node == null) {
+					return best;
+				}
+				best = first(node.anyPathRules, method, best);
+			}
+			start = end + 1;
+		}
+		if (!path.endsWith("/") || path.length() == 1) {
+			best = first(node.exactRules, method, best);
+		}
+		return best;
+	}
+
+	/**
+	 * @return The first declared rule of the current best and the matching rules.
+	 */
+	private static Rule first(Rule[] rules, String method, Rule best) {
+		for (Rule rule : rules) {
+			if (best != null && rule.order > best.order) {
+				break;
+			}
+			if (rule.matches(method)) {
+				return rule;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * The path within the application like the <code>AntPathRequestMatcher</code>.
+	 */
+	private static String getRequestPath(HttpServletRequest request) {
+		String url = request.getServletPath();
+		String pathInfo = request.getPathInfo();
+		if (pathInfo != null) {
+			url = StringUtils.hasLength(url) ? url + pathInfo : pathInfo;
+		}
+		return url;
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+import java.security.MessageDigest;
+import java.util.function.Supplier;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Grants requests with the configured scrape token as bearer authorization,
+ * e.g. of a metrics scraper without a user account. Other requests are decided
+ * by the fallback, usually a role check. Without a scrape token only the
+ * fallback decides.
+ * 
+ * @author Robert Breunung
+ */
+public class ScrapeTokenAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+	private static final String BEARER = "Bearer ";
+
+	private final AuthorizationManager<RequestAuthorizationContext> fallback;
+	private final byte[] scrapeToken;
+
+	/**
+	 * @param scrapeToken The secret of the scraper or an empty string.
+	 */
+	public ScrapeTokenAuthorizationManager(String scrapeToken,
+			AuthorizationManager<RequestAuthorizationContext> fallback) {
+		Assert.notNull(fallback, "Fallback authorization manager required.");
+		this.fallback = fallback;
+		this.scrapeToken = StringUtils.hasText(scrapeToken) ? scrapeToken.getBytes(UTF_8) : null;
+	}
+
+	@Override
+	public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+		if (scrapeToken != null) {
+			String authorization = context.getRequest().getHeader(AUTHORIZATION);
+			if (authorization != null && authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())
+					&& MessageDigest.isEqual(scrapeToken,
+							authorization.substring(BEARER.length()).trim().getBytes(UTF_8))) {
+				return new AuthorizationDecision(true);
+			}
+		}
+		return fallback.check(authentication, context);
+	}
+}
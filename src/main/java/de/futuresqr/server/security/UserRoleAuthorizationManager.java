@@ -0,0 +1,67 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.security;
+
+import java.util.function.Supplier;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.Assert;
+
+import de.futuresqr.server.model.backend.UserRole;
+
+/**
+ * Grants authenticated users with a role by a test of their role mask. The
+ * authorities of a FutureSQR authentication are {@link UserRole}s, so the test
+ * does not compare authority names.
+ * 
+ * @author Robert Breunung
+ */
+public class UserRoleAuthorizationManager<T> implements AuthorizationManager<T> {
+
+	private final int mask;
+
+	private UserRoleAuthorizationManager(int mask) {
+		this.mask = mask;
+	}
+
+	/**
+	 * @return A manager granting users with any of the given roles.
+	 */
+	public static <T> UserRoleAuthorizationManager<T> hasAnyRole(UserRole... roles) {
+		Assert.notEmpty(roles, "Role required.");
+		return new UserRoleAuthorizationManager<>(UserRole.toMask(roles));
+	}
+
+	@Override
+	public AuthorizationDecision check(Supplier<Authentication> authentication, T object) {
+		Authentication current = authentication.get();
+		boolean granted = current != null && current.isAuthenticated()
+				&& !(current instanceof AnonymousAuthenticationToken)
+				&& (UserRole.toMask(current.getAuthorities()) & mask) != 0;
+		return new AuthorizationDecision(granted);
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * This {@link PasswordEncoder} runs the expensive hash operations of its
+ * delegate on a dedicated executor with a bounded queue. Request threads only
+ * wait for the result, so a login storm cannot occupy more CPU than the
+ * configured number of hashing threads. If the queue is full or the result is
+ * not available within the maximum waiting time, a
+ * {@link PasswordHashingRejectedException} is thrown.
+ * <p>
+ * Bound to a {@link MeterRegistry} it records the time of each hash operation
+ * and the queue size.
+ * 
+ * @author Robert Breunung
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean, MeterBinder {
+
+	private final PasswordEncoder delegate;
+	private final ThreadPoolExecutor executor;
+	private volatile Timer hashingTimer;
+	private final long maxWaitMillis;
+
+	public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration maxWait) {
+		Assert.notNull(delegate, "Delegate password encoder required.");
+		Assert.isTrue(threads > 0, "At least one hashing thread required.");
+		Assert.isTrue(queueCapacity > 0, "Queue capacity must be positive.");
+		this.delegate = delegate;
+		this.maxWaitMillis = maxWait.toMillis();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		hashingTimer = Timer.builder("fsqr.password.hashing").description("Duration of password hash operations.")
+				.publishPercentileHistogram().minimumExpectedValue(Duration.ofMillis(1))
+				.maximumExpectedValue(Duration.ofSeconds(10)).register(registry);
+		Gauge.builder("fsqr.password.hashing.queue", this, BoundedPasswordEncoder::getQueueSize)
+				.description("Hash operations waiting for a free hashing thread.").register(registry);
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return execute(() -> delegate.encode(rawPassword));
+	}
+
+	/**
+	 * @return Number of hash operations waiting for a free hashing thread.
+	 */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return execute(() -> delegate.matches(rawPassword, encodedPassword));
+	}
+
+	@Override
+	public boolean upgradeEncoding(String encodedPassword) {
+		// cheap inspection of the hash prefix, no need to queue
+		return delegate.upgradeEncoding(encodedPassword);
+	}
+
+	private <T> T execute(Callable<T> task) {
+		Future<T> future;
+		try {
+			future = executor.submit(() -> timed(task));
+		} catch (RejectedExecutionException e) {
+			throw new PasswordHashingRejectedException("Password hashing capacity exhausted.", e);
+		}
+		try {
+			return future.get(maxWaitMillis, MILLISECONDS);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new PasswordHashingRejectedException("Interrupted while waiting for password hashing.", e);
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw new PasswordHashingRejectedException("Password hashing timed out.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException("Password hashing failed.", e.getCause());
+		}
+	}
+
+	private <T> T timed(Callable<T> task) throws Exception {
+		Timer timer = hashingTimer;
+		if (timer == null) {
+			return task.call();
+		}
+		long start = System.nanoTime();
+		try {
+			return task.call();
+		} finally {
+			timer.record(System.nanoTime() - start, NANOSECONDS);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import de.futuresqr.server.model.frontend.UserImportRow;
+import de.futuresqr.server.model.frontend.UserProperties;
+
+/**
+ * Reads {@link UserImportRow}s from CSV. The first line names the columns with
+ * the {@link UserProperties}. Values may be quoted with double quotes, but
+ * must not span multiple lines.
+ * 
+ * @author Robert Breunung
+ */
+class CsvUserImportReader implements Iterator<UserImportRow> {
+
+	private final BufferedReader reader;
+
+	private int displayNameColumn = -1;
+	private int emailColumn = -1;
+	private int loginNameColumn = -1;
+	private int passwordColumn = -1;
+
+	private String nextLine;
+
+	CsvUserImportReader(InputStream inputStream) throws IOException {
+		reader = new BufferedReader(new InputStreamReader(inputStream, UTF_8));
+		String header = reader.readLine();
+		if (header != null) {
+			List<String> columns = parseLine(header);
+			for (int i = 0; i < columns.size(); i++) {
+				switch (columns.get(i).trim().toLowerCase()) {
+				case UserProperties.DISPLAY_NAME -> displayNameColumn = i;
+				case UserProperties.EMAIL -> emailColumn = i;
+				case UserProperties.LOGIN_NAME -> loginNameColumn = i;
+				case UserProperties.PASSWORD -> passwordColumn = i;
+				default -> {
+					// ignore unknown columns
+				}
+				}
+			}
+		}
+		nextLine = readNonEmptyLine();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return nextLine != null;
+	}
+
+	@Override
+	public UserImportRow next() {
+		if (nextLine == null) {
+			throw new NoSuchElementException();
+		}
+		List<String> values = parseLine(nextLine);
+		UserImportRow row = new UserImportRow();
+		row.setDisplayname(getValue(values, displayNameColumn));
+		row.setEmail(getValue(values, emailColumn));
+		row.setLoginname(getValue(values, loginNameColumn));
+		row.setPassword(getValue(values, passwordColumn));
+		try {
+			nextLine = readNonEmptyLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return row;
+	}
+
+	private String getValue(List<String> values, int column) {
+		return column >= 0 && column < values.size() ? values.get(column) : null;
+	}
+
+	private String readNonEmptyLine() throws IOException {
+		String line;
+		do {
+			line = reader.readLine();
+		} while (line != null && line.isBlank());
+		return line;
+	}
+
+	static List<String> parseLine(String line) {
+		List<String> values = new ArrayList<>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					value.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					value.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				values.add(value.toString());
+				value.setLength(0);
+			} else {
+				value.append(c);
+			}
+		}
+		values.add(value.toString());
+		return values;
+	}
+}
@@ -24,38 +24,53 @@
 package de.futuresqr.server.service;
 
 import static de.futuresqr.server.model.backend.PersistenceUser.toUserDetails;
-import static java.util.stream.Collectors.toSet;
 
-import java.util.Arrays;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Slice;
 import org.springframework.lang.NonNull;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.backend.FsqrUserDetails;
 import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserRole;
 import de.futuresqr.server.restdata.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Productive user details manager for FSQR internal authentication.
+ * Productive user details manager for FSQR internal authentication. As
+ * {@link UserDetailsPasswordService} it stores the rehashed password after a
+ * successful login, if the password encoder requests an upgrade.
  * 
  * @author Robert Breunung
  */
 @Service
 @Slf4j
-public class FsqrUserDetailsManager implements UserDetailsManager {
+public class FsqrUserDetailsManager implements UserDetailsManager, UserDetailsPasswordService {
 
-	public static final String PREFIX_ROLE = "ROLE_";
-	public static final String ROLE_ADMIN = "ADMIN";
-	public static final String ROLE_USER = "USER";
+	public static final String PREFIX_ROLE = UserRole.PREFIX_ROLE;
+	public static final String ROLE_ADMIN = UserRole.NAME_ADMIN;
+	public static final String ROLE_USER = UserRole.NAME_USER;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private PrimaryReads primaryReads;
+
+	@Autowired
+	private UserDetailsCache userDetailsCache;
 
 	@Autowired
 	private UserRepository userRepository;
@@ -65,11 +80,11 @@ public class FsqrUserDetailsManager implements UserDetailsManager {
 		if (userRepository.count() == 0) {
 			log.info("Empty user repository. Set default users.");
 			PersistenceUser user = PersistenceUser.builder().loginName("user").password(encoder.encode("password"))
-					.grantedAuthorities(Arrays.stream(new String[] { PREFIX_ROLE + ROLE_USER }).collect(toSet()))
+					.roles(UserRole.toMask(UserRole.USER))
 					.displayName("Otto Normal").avatarId(UUID.randomUUID()).email("user@mindscan.local").build();
 			userRepository.save(user);
-			user = PersistenceUser.builder().loginName("admin").password(encoder.encode("admin")).grantedAuthorities(
-					Arrays.stream(new String[] { PREFIX_ROLE + ROLE_USER, PREFIX_ROLE + ROLE_ADMIN }).collect(toSet()))
+			user = PersistenceUser.builder().loginName("admin").password(encoder.encode("admin"))
+					.roles(UserRole.toMask(UserRole.USER, UserRole.ADMIN))
 					.displayName("Super Power").avatarId(UUID.randomUUID()).email("admin@mindscan.local").build();
 			userRepository.save(user);
 		}
@@ -77,6 +92,10 @@ public class FsqrUserDetailsManager implements UserDetailsManager {
 
 	@Override
 	public UserDetails loadUserByUsername(@NonNull String username) throws UsernameNotFoundException {
+		return userDetailsCache.get(username, name -> primaryReads.execute(() -> loadUserFromRepository(name)));
+	}
+
+	private UserDetails loadUserFromRepository(String username) {
 		Slice<PersistenceUser> userSlice = userRepository.findByLoginName(username);
 		if (userSlice.isEmpty()) {
 			throw new UsernameNotFoundException(String.format("\"%s\" not found.", username));
@@ -90,7 +109,8 @@ public class FsqrUserDetailsManager implements UserDetailsManager {
 	@Override
 	public void createUser(UserDetails user) {
 		PersistenceUser dbUser = PersistenceUser.fromUserDetails(user);
-		userRepository.save(dbUser);
+		dbUser = userRepository.save(dbUser);
+		eventPublisher.publishEvent(new UserChangedEvent(dbUser.getUuid(), dbUser.getLoginName()));
 	}
 
 	@Override
@@ -114,6 +134,27 @@ public class FsqrUserDetailsManager implements UserDetailsManager {
 
 		user.setPassword(newPassword);
 		userRepository.save(user);
+		eventPublisher.publishEvent(new UserChangedEvent(user.getUuid(), username));
+	}
+
+	@Override
+	public UserDetails updatePassword(UserDetails user, String newPassword) {
+		Slice<PersistenceUser> slice = userRepository.findByLoginName(user.getUsername());
+		if (!slice.hasContent()) {
+			log.warn("Cannot upgrade password of unknown user {}.", user.getUsername());
+			return user;
+		}
+
+		PersistenceUser dbUser = slice.iterator().next();
+		dbUser.setPassword(newPassword);
+		userRepository.save(dbUser);
+		eventPublisher.publishEvent(new UserChangedEvent(dbUser.getUuid(), dbUser.getLoginName()));
+		log.debug("Upgraded password encoding of user {}.", user.getUsername());
+
+		if (user instanceof FsqrUserDetails fsqrUser) {
+			return new FsqrUserDetails(fsqrUser, newPassword);
+		}
+		return User.withUserDetails(user).password(newPassword).build();
 	}
 
 	@Override
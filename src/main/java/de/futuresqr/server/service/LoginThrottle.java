@@ -0,0 +1,167 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Token buckets limiting login attempts per login name and per client address.
+ * Attempts over the limit are rejected before the password is hashed.
+ * <p>
+ * A bucket is a single atomic value in the style of the generic cell rate
+ * algorithm: the time at which the bucket is full again. An attempt adds one
+ * refill period and is rejected if the bucket would exceed its capacity. The
+ * buckets are held in a bounded cache which is concurrent by lock striping and
+ * drops buckets idle for longer than a full refill.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+public class LoginThrottle {
+
+	/**
+	 * A limit of attempts.
+	 */
+	public static class Limit {
+		private final long capacity;
+		private final long refillNanos;
+
+		/**
+		 * @param capacity     Attempts in a burst.
+		 * @param refillPeriod Period after which one more attempt is allowed.
+		 */
+		public Limit(long capacity, Duration refillPeriod) {
+			this.capacity = Math.max(1, capacity);
+			this.refillNanos = Math.max(1, refillPeriod.toNanos());
+		}
+
+		private long getBurstNanos() {
+			return capacity * refillNanos;
+		}
+	}
+
+	private static final String PREFIX_ACCOUNT = "a:";
+	private static final String PREFIX_ADDRESS = "i:";
+
+	private final Limit accountLimit;
+	private final Limit addressLimit;
+	private final Cache<String, AtomicLong> buckets;
+	private final LongSupplier nanoClock;
+
+	private final LongAdder permitted = new LongAdder();
+	private final LongAdder rejectedByAccount = new LongAdder();
+	private final LongAdder rejectedByAddress = new LongAdder();
+
+	public LoginThrottle(@Value("${fsqr.security.login-throttle.account.capacity:5}") long accountCapacity,
+			@Value("${fsqr.security.login-throttle.account.refill-period:1m}") Duration accountRefill,
+			@Value("${fsqr.security.login-throttle.address.capacity:20}") long addressCapacity,
+			@Value("${fsqr.security.login-throttle.address.refill-period:3s}") Duration addressRefill,
+			@Value("${fsqr.security.login-throttle.maximum-size:100000}") long maximumSize) {
+		this(new Limit(accountCapacity, accountRefill), new Limit(addressCapacity, addressRefill), maximumSize,
+				System::nanoTime);
+	}
+
+	LoginThrottle(Limit accountLimit, Limit addressLimit, long maximumSize, LongSupplier nanoClock) {
+		this.accountLimit = accountLimit;
+		this.addressLimit = addressLimit;
+		this.nanoClock = nanoClock;
+		Duration idle = Duration
+				.ofNanos(Math.max(accountLimit.getBurstNanos(), addressLimit.getBurstNanos()));
+		buckets = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterAccess(idle).build();
+	}
+
+	/**
+	 * Take a token of the address and of the login name.
+	 * 
+	 * @param address   The client address, may be <code>null</code>.
+	 * @param loginName The login name, may be <code>null</code>.
+	 * @return <code>null</code> if the attempt is permitted, otherwise the duration
+	 *         until the next attempt is permitted.
+	 */
+	public Duration tryAcquire(String address, String loginName) {
+		long now = nanoClock.getAsLong();
+		if (address != null) {
+			long waitNanos = tryAcquire(PREFIX_ADDRESS + address, addressLimit, now);
+			if (waitNanos > 0) {
+				rejectedByAddress.increment();
+				return Duration.ofNanos(waitNanos);
+			}
+		}
+		if (loginName != null) {
+			long waitNanos = tryAcquire(PREFIX_ACCOUNT + loginName.strip().toLowerCase(Locale.ROOT), accountLimit,
+					now);
+			if (waitNanos > 0) {
+				rejectedByAccount.increment();
+				return Duration.ofNanos(waitNanos);
+			}
+		}
+		permitted.increment();
+		return null;
+	}
+
+	public long getPermitted() {
+		return permitted.sum();
+	}
+
+	public long getRejectedByAccount() {
+		return rejectedByAccount.sum();
+	}
+
+	public long getRejectedByAddress() {
+		return rejectedByAddress.sum();
+	}
+
+	public long getBucketCount() {
+		return buckets.estimatedSize();
+	}
+
+	/**
+	 * @return Zero if permitted, otherwise the nanoseconds to wait.
+	 */
+	private long tryAcquire(String key, Limit limit, long now) {
+		// the time at which the bucket is full again
+		AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(now));
+		while (true) {
+			long current = fullAt.get();
+			long next = Math.max(current, now) + limit.refillNanos;
+			long excess = next - now - limit.getBurstNanos();
+			if (excess > 0) {
+				return excess;
+			}
+			if (fullAt.compareAndSet(current, next)) {
+				return 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class creates the password encoders of FutureSQR. Stored passwords carry
+ * the id of their algorithm as prefix, e.g. <code>{bcrypt}</code>. Passwords
+ * without prefix are treated as BCrypt hashes.
+ *
+ * @author Robert Breunung
+ */
+@Slf4j
+public final class PasswordEncoderFactory {
+
+	public static final String ID_BCRYPT = "bcrypt";
+
+	/** Lower bound of calibration. This is the BCrypt default. */
+	static final int BCRYPT_MIN_STRENGTH = 10;
+	/** Upper bound of calibration. */
+	static final int BCRYPT_MAX_STRENGTH = 16;
+
+	private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+	// do not instantiate
+	private PasswordEncoderFactory() {
+	}
+
+	/**
+	 * Find the lowest BCrypt strength not below {@value #BCRYPT_MIN_STRENGTH}
+	 * whose hashing time reaches the target duration on this machine.
+	 */
+	public static int calibrateBCryptStrength(Duration targetDuration) {
+		int strength = BCRYPT_MIN_STRENGTH;
+		for (; strength < BCRYPT_MAX_STRENGTH; strength++) {
+			long start = System.nanoTime();
+			new BCryptPasswordEncoder(strength).encode(CALIBRATION_PASSWORD);
+			Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+			log.debug("BCrypt strength {} requires {} ms.", strength, elapsed.toMillis());
+			if (elapsed.compareTo(targetDuration) >= 0) {
+				break;
+			}
+		}
+		log.info("Calibrated BCrypt strength {} for target duration {} ms.", strength, targetDuration.toMillis());
+		return strength;
+	}
+
+	/**
+	 * Create a delegating password encoder which encodes with BCrypt of the given
+	 * strength. Its {@link PasswordEncoder#upgradeEncoding(String)} reports
+	 * passwords of a different algorithm or a lower strength.
+	 */
+	public static PasswordEncoder createDelegatingPasswordEncoder(int bcryptStrength) {
+		BCryptPasswordEncoder bcryptEncoder = new BCryptPasswordEncoder(bcryptStrength);
+		Map<String, PasswordEncoder> encoders = new HashMap<>();
+		encoders.put(ID_BCRYPT, bcryptEncoder);
+		DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder(ID_BCRYPT, encoders);
+		delegatingEncoder.setDefaultPasswordEncoderForMatches(bcryptEncoder);
+		return delegatingEncoder;
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * This exception signals that the password hashing capacity is exhausted. It
+ * is an authentication exception in order to reach the authentication failure
+ * handler of the login filter, and it answers REST calls with status 503.
+ * 
+ * @author Robert Breunung
+ */
+@ResponseStatus(SERVICE_UNAVAILABLE)
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PasswordHashingRejectedException(String message) {
+		super(message);
+	}
+
+	public PasswordHashingRejectedException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
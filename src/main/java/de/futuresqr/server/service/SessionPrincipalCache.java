@@ -0,0 +1,103 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.backend.FsqrUserDetails;
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.restdata.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded cache of principals by user id. A compact session only stores the
+ * user id, the principal of each request is restored from this cache. The
+ * cached principals carry no credentials and are evicted on every
+ * {@link UserChangedEvent}.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+@Slf4j
+public class SessionPrincipalCache {
+
+	private final LoadingCache<UUID, FsqrUserDetails> cache;
+
+	private final PrimaryReads primaryReads;
+
+	private final UserRepository userRepository;
+
+	public SessionPrincipalCache(UserRepository userRepository, PrimaryReads primaryReads,
+			@Value("${fsqr.cache.session-principal.maximum-size:10000}") long maximumSize,
+			@Value("${fsqr.cache.session-principal.expire-after-write:5m}") Duration expireAfterWrite) {
+		this.primaryReads = primaryReads;
+		this.userRepository = userRepository;
+		cache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats()
+				.build(this::load);
+	}
+
+	/**
+	 * @param uuid The id of the user.
+	 * @return The principal without credentials or <code>null</code> for an
+	 *         unknown user.
+	 */
+	public FsqrUserDetails get(UUID uuid) {
+		return cache.get(uuid);
+	}
+
+	public void evict(UUID uuid) {
+		if (uuid != null) {
+			cache.invalidate(uuid);
+		}
+	}
+
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	private FsqrUserDetails load(UUID uuid) {
+		FsqrUserDetails principal = primaryReads
+				.execute(() -> userRepository.findById(uuid).map(PersistenceUser::toUserDetails).orElse(null));
+		if (principal != null) {
+			principal.eraseCredentials();
+		}
+		return principal;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		log.debug("Evict session principal of {}.", event.getLoginName());
+		evict(event.getUuid());
+	}
+}
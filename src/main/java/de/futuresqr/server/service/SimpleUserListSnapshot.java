@@ -0,0 +1,144 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pre-serialized simple user list in identity and gzip encoding. The snapshot
+ * is rebuilt in background after every committed {@link UserChangedEvent}.
+ * Until the rebuild is done, the snapshot is outdated and callers have to
+ * serialize the list themselves.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+@Slf4j
+public class SimpleUserListSnapshot implements DisposableBean {
+
+	/**
+	 * The serialized list at a given entity tag of the
+	 * {@link UserDirectoryVersion}.
+	 */
+	@AllArgsConstructor(access = AccessLevel.PRIVATE)
+	@Getter
+	public static class Content {
+		private final String eTag;
+		private final byte[] identity;
+		private final byte[] gzip;
+	}
+
+	private volatile Content content;
+
+	private final ExecutorService executor = Executors
+			.newSingleThreadExecutor(new CustomizableThreadFactory("user-list-snapshot-"));
+
+	private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+	@Autowired
+	private PrimaryReads primaryReads;
+
+	@Autowired
+	private UserDirectoryVersion userDirectoryVersion;
+
+	@Autowired
+	private UserListWriter userListWriter;
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return The content matching the current version of the user directory or
+	 *         <code>null</code> if a rebuild is pending.
+	 */
+	public Content getCurrent() {
+		Content current = content;
+		if (current == null || !current.eTag.equals(userDirectoryVersion.getETag())) {
+			scheduleRebuild();
+			return null;
+		}
+		return current;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		scheduleRebuild();
+	}
+
+	void rebuild() {
+		// changes during the rebuild shall schedule another rebuild
+		rebuildScheduled.set(false);
+		String eTag = userDirectoryVersion.getETag();
+		try {
+			// read from the primary, the snapshot is tagged with the version of the change
+			byte[] identityBytes = primaryReads.execute(this::writeList);
+
+			ByteArrayOutputStream gzip = new ByteArrayOutputStream(identityBytes.length / 4 + 64);
+			try (GZIPOutputStream gzipStream = new GZIPOutputStream(gzip)) {
+				gzipStream.write(identityBytes);
+			}
+
+			content = new Content(eTag, identityBytes, gzip.toByteArray());
+			log.debug("Simple user list snapshot of version {} with {} bytes.", eTag, identityBytes.length);
+		} catch (IOException | RuntimeException e) {
+			log.error("Cannot build simple user list snapshot.", e);
+		}
+	}
+
+	private byte[] writeList() {
+		ByteArrayOutputStream identity = new ByteArrayOutputStream();
+		try {
+			userListWriter.writeSimpleUserList(identity);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return identity.toByteArray();
+	}
+
+	private void scheduleRebuild() {
+		if (rebuildScheduled.compareAndSet(false, true)) {
+			executor.execute(this::rebuild);
+		}
+	}
+}
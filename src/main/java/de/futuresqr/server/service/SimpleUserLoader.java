@@ -0,0 +1,103 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+
+/**
+ * Coalesces the user lookups of a single request in the style of a data loader.
+ * Server side code registers the ids it needs by {@link #load(UUID)} and a
+ * single {@link #dispatch()} resolves all of them by one batch lookup. Ids
+ * already resolved within the request are answered without another lookup.
+ * <p>
+ * The loader belongs to the request thread and is not thread safe.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+@RequestScope
+public class SimpleUserLoader {
+
+	private final Map<UUID, CompletableFuture<SimpleUserDto>> pending = new LinkedHashMap<>();
+
+	private final Map<UUID, CompletableFuture<SimpleUserDto>> resolved = new HashMap<>();
+
+	@Autowired
+	private SimpleUserLookup simpleUserLookup;
+
+	/**
+	 * Register a user id for the next {@link #dispatch()}.
+	 * 
+	 * @return The user, completed with <code>null</code> for unknown ids.
+	 */
+	public CompletableFuture<SimpleUserDto> load(UUID uuid) {
+		CompletableFuture<SimpleUserDto> user = resolved.get(uuid);
+		if (user != null) {
+			return user;
+		}
+		return pending.computeIfAbsent(uuid, k -> new CompletableFuture<>());
+	}
+
+	/**
+	 * Register many user ids for the next {@link #dispatch()}.
+	 */
+	public List<CompletableFuture<SimpleUserDto>> loadMany(List<UUID> uuids) {
+		List<CompletableFuture<SimpleUserDto>> users = new ArrayList<>(uuids.size());
+		for (UUID uuid : uuids) {
+			users.add(load(uuid));
+		}
+		return users;
+	}
+
+	/**
+	 * Resolve all pending ids by a single batch lookup.
+	 */
+	public void dispatch() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		Map<UUID, CompletableFuture<SimpleUserDto>> batch = new LinkedHashMap<>(pending);
+		pending.clear();
+		try {
+			Map<UUID, SimpleUserDto> users = simpleUserLookup.findByIds(batch.keySet());
+			batch.forEach((uuid, user) -> user.complete(users.get(uuid)));
+			resolved.putAll(batch);
+		} catch (RuntimeException e) {
+			batch.values().forEach(user -> user.completeExceptionally(e));
+			throw e;
+		}
+	}
+}
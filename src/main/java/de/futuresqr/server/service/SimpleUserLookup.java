@@ -0,0 +1,132 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * Resolves many user ids to {@link SimpleUserDto}s at once. Ids missing in the
+ * cache are loaded by <code>IN</code> queries of a bounded number of ids. The
+ * cache is evicted per user on every {@link UserChangedEvent}.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+public class SimpleUserLookup {
+
+	private final Cache<UUID, SimpleUserDto> cache;
+
+	private final int chunkSize;
+
+	private final PrimaryReads primaryReads;
+
+	private final UserRepository userRepository;
+
+	public SimpleUserLookup(UserRepository userRepository, PrimaryReads primaryReads,
+			@Value("${fsqr.user.lookup.chunk-size:500}") int chunkSize,
+			@Value("${fsqr.cache.simple-user.maximum-size:50000}") long maximumSize,
+			@Value("${fsqr.cache.simple-user.expire-after-write:10m}") Duration expireAfterWrite) {
+		this.userRepository = userRepository;
+		this.primaryReads = primaryReads;
+		this.chunkSize = Math.max(1, chunkSize);
+		cache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats()
+				.build();
+	}
+
+	/**
+	 * @param uuids User ids, may contain duplicates.
+	 * @return The known users by id.
+	 */
+	public Map<UUID, SimpleUserDto> findByIds(Collection<UUID> uuids) {
+		Set<UUID> distinct = new LinkedHashSet<>(uuids);
+		distinct.remove(null);
+		return cache.getAll(distinct, this::load);
+	}
+
+	/**
+	 * @param uuids User ids, may contain duplicates.
+	 * @return The known users in order of the given ids without duplicates.
+	 */
+	public List<SimpleUserDto> findListByIds(Collection<UUID> uuids) {
+		Map<UUID, SimpleUserDto> users = findByIds(uuids);
+		return users.isEmpty() ? List.of()
+				: new LinkedHashSet<>(uuids).stream().map(users::get).filter(Objects::nonNull).toList();
+	}
+
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		cache.invalidate(event.getUuid());
+	}
+
+	private Map<UUID, SimpleUserDto> load(Set<? extends UUID> missing) {
+		return primaryReads.execute(() -> loadChunks(missing));
+	}
+
+	private Map<UUID, SimpleUserDto> loadChunks(Set<? extends UUID> missing) {
+		Map<UUID, SimpleUserDto> loaded = new HashMap<>(missing.size() * 2);
+		List<UUID> chunk = new ArrayList<>(chunkSize);
+		for (UUID uuid : missing) {
+			chunk.add(uuid);
+			if (chunk.size() == chunkSize) {
+				loadChunk(chunk, loaded);
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+		if (!chunk.isEmpty()) {
+			loadChunk(chunk, loaded);
+		}
+		return loaded;
+	}
+
+	private void loadChunk(List<UUID> chunk, Map<UUID, SimpleUserDto> loaded) {
+		for (SimpleUserDto user : userRepository.findSimpleUsersByIds(chunk)) {
+			loaded.put(user.getUuid(), user);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.frontend.UserEditDto;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * This service applies administrative changes to many users within one
+ * transaction. Bans are applied by set based updates instead of loading and
+ * saving every user. Such a bulk update evicts the cache region of all users,
+ * see {@link UserRepository#banAll(Collection, Instant)}.
+ * 
+ * @author Robert Breunung
+ */
+@Service
+public class UserBatchService {
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	/**
+	 * @return The banned users. Unknown ids are ignored.
+	 */
+	@Transactional
+	public List<PersistenceUser> ban(Collection<UUID> uuids) {
+		userRepository.banAll(uuids, Instant.now());
+		return loadAndPublish(uuids);
+	}
+
+	/**
+	 * The edits are entity updates of the loaded users, so that the second level
+	 * cache keeps all other users.
+	 * 
+	 * @return The edited users. Unknown ids are ignored.
+	 */
+	@Transactional
+	public List<PersistenceUser> edit(Collection<UserEditDto> edits) {
+		final Instant now = Instant.now();
+		Set<UUID> uuids = new LinkedHashSet<>();
+		for (UserEditDto edit : edits) {
+			if (edit.getUuid() != null) {
+				uuids.add(edit.getUuid());
+			}
+		}
+		if (uuids.isEmpty()) {
+			return List.of();
+		}
+		Map<UUID, PersistenceUser> users = new LinkedHashMap<>();
+		userRepository.findAllById(uuids).forEach(u -> users.put(u.getUuid(), u));
+		for (UserEditDto edit : edits) {
+			PersistenceUser user = users.get(edit.getUuid());
+			if (user == null) {
+				continue;
+			}
+			if (edit.getDisplayname() != null) {
+				user.setDisplayName(edit.getDisplayname());
+			}
+			if (Boolean.TRUE.equals(edit.getBanned()) && !user.isBanned()) {
+				user.setBanned(true);
+				user.setBannedDate(now);
+			} else if (Boolean.FALSE.equals(edit.getBanned()) && user.isBanned()) {
+				user.setBanned(false);
+				user.setBannedDate(null);
+			}
+		}
+		users.values().forEach(u -> eventPublisher.publishEvent(new UserChangedEvent(u.getUuid(), u.getLoginName())));
+		return List.copyOf(users.values());
+	}
+
+	/**
+	 * @return The unbanned users. Unknown ids are ignored.
+	 */
+	@Transactional
+	public List<PersistenceUser> unban(Collection<UUID> uuids) {
+		userRepository.unbanAll(uuids, Instant.now());
+		return loadAndPublish(uuids);
+	}
+
+	/**
+	 * Load the changed users by one query. The events are delivered after commit.
+	 */
+	private List<PersistenceUser> loadAndPublish(Collection<UUID> uuids) {
+		if (uuids.isEmpty()) {
+			return List.of();
+		}
+		List<PersistenceUser> users = userRepository.findAllById(uuids);
+		users.forEach(u -> eventPublisher.publishEvent(new UserChangedEvent(u.getUuid(), u.getLoginName())));
+		return users;
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import de.futuresqr.server.model.backend.FsqrUserDetails;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded cache of {@link UserDetails} by login name. The cache is evicted on
+ * every {@link UserChangedEvent} in order to apply changes like a ban
+ * immediately.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+
+	private final Cache<String, UserDetails> cache;
+
+	public UserDetailsCache(@Value("${fsqr.cache.user-details.maximum-size:10000}") long maximumSize,
+			@Value("${fsqr.cache.user-details.expire-after-write:5m}") Duration expireAfterWrite) {
+		cache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(expireAfterWrite).recordStats()
+				.build();
+	}
+
+	/**
+	 * Get the user details from the cache or from the loader in case of a miss.
+	 * The returned object is a copy as the authentication process erases the
+	 * credentials of the principal.
+	 * 
+	 * @param loginName The login name of the user.
+	 * @param loader    Loads the user in case of a cache miss. It may throw an
+	 *                  exception for unknown users.
+	 * @return A copy of the cached user details.
+	 */
+	public UserDetails get(String loginName, Function<String, UserDetails> loader) {
+		UserDetails userDetails = cache.get(loginName, loader);
+		if (userDetails instanceof FsqrUserDetails fsqrUserDetails) {
+			return new FsqrUserDetails(fsqrUserDetails, fsqrUserDetails.getPassword());
+		}
+		return User.withUserDetails(userDetails).build();
+	}
+
+	public void evict(String loginName) {
+		if (loginName != null) {
+			cache.invalidate(loginName);
+		}
+	}
+
+	public void evictAll() {
+		cache.invalidateAll();
+	}
+
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		log.debug("Evict user details of {}.", event.getLoginName());
+		evict(event.getLoginName());
+	}
+}
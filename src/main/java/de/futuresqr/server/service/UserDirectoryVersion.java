@@ -0,0 +1,198 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.WebRequest;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.backend.UserDirectoryState;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * Version of the whole user directory. It is derived from the number of users
+ * and their latest change date in the database, so all nodes agree on it. It
+ * allows to answer conditional requests for user data without loading any
+ * user.
+ * <p>
+ * The version is read again after every local {@link UserChangedEvent} and at
+ * most once per refresh interval otherwise, which bounds the time until a
+ * change of another node is detected.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+public class UserDirectoryVersion {
+
+	private static final class Validator {
+		private final String eTag;
+		private final long generation;
+		private final long lastModified;
+		private final long readAt;
+		private final UserDirectoryState state;
+
+		private Validator(UserDirectoryState state, long generation, long readAt) {
+			Instant lastChange = state.getLastChangeDate() == null ? Instant.EPOCH : state.getLastChangeDate();
+			eTag = "\"" + Long.toHexString(state.getUserCount()) + '-'
+					+ Long.toHexString(ChronoUnit.MICROS.between(Instant.EPOCH, lastChange)) + "\"";
+			// changes within the same second are detected by the entity tag
+			lastModified = lastChange.truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+			this.generation = generation;
+			this.readAt = readAt;
+			this.state = state;
+		}
+	}
+
+	private final LongSupplier nanoClock;
+
+	private final PrimaryReads primaryReads;
+
+	private final long refreshNanos;
+
+	private final UserRepository userRepository;
+
+	/** Incremented by local changes, a validator read before is outdated. */
+	private final AtomicLong generation = new AtomicLong();
+
+	private volatile Validator validator;
+
+	public UserDirectoryVersion(UserRepository userRepository, PrimaryReads primaryReads,
+			@Value("${fsqr.user.directory-version.refresh-interval:1s}") Duration refreshInterval) {
+		this(userRepository, primaryReads, refreshInterval, System::nanoTime);
+	}
+
+	UserDirectoryVersion(UserRepository userRepository, PrimaryReads primaryReads, Duration refreshInterval,
+			LongSupplier nanoClock) {
+		this.nanoClock = nanoClock;
+		this.primaryReads = primaryReads;
+		this.refreshNanos = refreshInterval.toNanos();
+		this.userRepository = userRepository;
+	}
+
+	/**
+	 * Check the conditional request headers against the current version. This
+	 * sets the validator headers and in case of a match the status 304.
+	 * 
+	 * @return <code>true</code> if the client has the current version and no body
+	 *         shall be written.
+	 */
+	public boolean checkNotModified(WebRequest request) {
+		Validator current = getValidator();
+		return request.checkNotModified(current.eTag, current.lastModified);
+	}
+
+	/**
+	 * Check the conditional request headers for a resource which additionally
+	 * depends on the given user, e.g. the information of the current user.
+	 * 
+	 * @see #checkNotModified(WebRequest)
+	 */
+	public boolean checkNotModified(WebRequest request, String loginName) {
+		return checkNotModified(request, getValidator(),
+				Base64.getUrlEncoder().withoutPadding().encodeToString(loginName.getBytes(UTF_8)));
+	}
+
+	/**
+	 * Check the conditional request headers for a representation in a content
+	 * coding. A strong entity tag differs per content coding, so the coding is
+	 * appended, e.g. <code>-gzip</code>.
+	 * 
+	 * @see #checkNotModified(WebRequest)
+	 */
+	public boolean checkNotModifiedEncoded(WebRequest request, String contentCoding) {
+		return checkNotModified(request, getValidator(), contentCoding);
+	}
+
+	/**
+	 * @return A strong entity tag of the current version.
+	 */
+	public String getETag() {
+		return getValidator().eTag;
+	}
+
+	/**
+	 * @return The number of users and their latest change of the current version.
+	 */
+	public UserDirectoryState getState() {
+		return getValidator().state;
+	}
+
+	/**
+	 * @return The latest change in second precision. It is never later than the
+	 *         change itself.
+	 */
+	public Instant getLastModified() {
+		return Instant.ofEpochMilli(getValidator().lastModified);
+	}
+
+	/**
+	 * Runs before the other listeners, so that rebuilt views see the new
+	 * version.
+	 */
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		generation.incrementAndGet();
+	}
+
+	private static boolean checkNotModified(WebRequest request, Validator current, String suffix) {
+		String eTag = current.eTag.substring(0, current.eTag.length() - 1) + '-' + suffix + '"';
+		return request.checkNotModified(eTag, current.lastModified);
+	}
+
+	private Validator getValidator() {
+		Validator current = validator;
+		if (isCurrent(current)) {
+			return current;
+		}
+		synchronized (this) {
+			current = validator;
+			if (!isCurrent(current)) {
+				long readGeneration = generation.get();
+				current = new Validator(primaryReads.execute(userRepository::findDirectoryState), readGeneration,
+						nanoClock.getAsLong());
+				validator = current;
+			}
+			return current;
+		}
+	}
+
+	private boolean isCurrent(Validator current) {
+		return current != null && current.generation == generation.get()
+				&& nanoClock.getAsLong() - current.readAt < refreshNanos;
+	}
+}
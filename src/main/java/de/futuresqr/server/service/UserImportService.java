@@ -0,0 +1,286 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_CREATED;
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_DUPLICATE;
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_FAILED;
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_INVALID;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserRole;
+import de.futuresqr.server.model.frontend.UserImportResult;
+import de.futuresqr.server.model.frontend.UserImportRow;
+import de.futuresqr.server.restdata.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This service creates many users at once. The users are processed in chunks:
+ * collisions of login names are checked by one query per chunk, passwords are
+ * hashed in parallel and every chunk is inserted in its own transaction using
+ * JDBC batching. The result of every row is written as soon as its chunk is
+ * done.
+ * <p>
+ * The password encoder is shared with the logins. Every import thread waits
+ * for one hash at a time, so the import threads bound the hashes of an import
+ * in flight. They are limited to half of the hashing threads and a quarter of
+ * the hashing queue, so that logins are not rejected during an import.
+ * 
+ * @author Robert Breunung
+ */
+@Service
+@Slf4j
+public class UserImportService implements DisposableBean {
+
+	public enum Format {
+		CSV, NDJSON
+	}
+
+	public static final String MEDIA_TYPE_CSV = "text/csv";
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private PasswordEncoder passwordEncoder;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private final int chunkSize;
+	/**
+	 * Waits for the password encoder, which may block. The common fork join pool
+	 * shall not be blocked.
+	 */
+	private final ExecutorService hashingExecutor;
+	private final ObjectMapper objectMapper;
+	private final ObjectWriter resultWriter;
+	private final TransactionTemplate transactionTemplate;
+
+	public UserImportService(ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+			@Value("${fsqr.user.import.chunk-size:500}") int chunkSize,
+			@Value("${fsqr.user.import.hashing-threads:0}") int importThreads,
+			@Value("${fsqr.security.hashing.threads:0}") int hashingThreads,
+			@Value("${fsqr.security.hashing.queue-capacity:64}") int hashingQueueCapacity) {
+		this.chunkSize = Math.max(1, chunkSize);
+		hashingExecutor = Executors.newFixedThreadPool(
+				limitImportThreads(importThreads,
+						hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors(),
+						hashingQueueCapacity),
+				new CustomizableThreadFactory("user-import-"));
+		this.objectMapper = objectMapper;
+		resultWriter = objectMapper.writerFor(UserImportResult.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@Override
+	public void destroy() {
+		hashingExecutor.shutdownNow();
+	}
+
+	/**
+	 * @param importThreads The configured import threads or 0 for the default.
+	 * @return The number of import threads leaving capacity of the password
+	 *         encoder to the logins.
+	 */
+	static int limitImportThreads(int importThreads, int hashingThreads, int hashingQueueCapacity) {
+		int limit = Math.max(1, Math.min(hashingThreads / 2, hashingQueueCapacity / 4));
+		return importThreads > 0 ? Math.min(importThreads, limit) : limit;
+	}
+
+	/**
+	 * Import the users of the input and write the result of every row as new line
+	 * delimited JSON.
+	 */
+	public void importUsers(InputStream input, Format format, OutputStream output) throws IOException {
+		Iterator<UserImportRow> rows = format == Format.CSV ? new CsvUserImportReader(input)
+				: objectMapper.readerFor(UserImportRow.class).readValues(input);
+		Set<String> importedLoginNames = new HashSet<>();
+		List<UserImportRow> chunk = new ArrayList<>(chunkSize);
+		int firstRow = 1;
+
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+			generator.setRootValueSeparator(new SerializedString("\n"));
+			try {
+				while (rows.hasNext()) {
+					chunk.add(rows.next());
+					if (chunk.size() == chunkSize) {
+						importChunk(chunk, firstRow, importedLoginNames, generator);
+						firstRow += chunk.size();
+						chunk.clear();
+					}
+				}
+			} catch (RuntimeException e) {
+				// the input cannot be resynchronized after a syntax error
+				log.info("Abort user import at row {}.", firstRow + chunk.size(), e);
+				importChunk(chunk, firstRow, importedLoginNames, generator);
+				resultWriter.writeValue(generator, new UserImportResult(firstRow + chunk.size(), null, STATUS_INVALID,
+						null, "Malformed input, import aborted."));
+				return;
+			}
+			importChunk(chunk, firstRow, importedLoginNames, generator);
+		}
+	}
+
+	private void importChunk(List<UserImportRow> chunk, int firstRow, Set<String> importedLoginNames,
+			JsonGenerator generator) throws IOException {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		UserImportResult[] results = new UserImportResult[chunk.size()];
+
+		List<String> loginNames = new ArrayList<>(chunk.size());
+		for (UserImportRow row : chunk) {
+			if (row.getLoginname() != null && !row.getLoginname().isBlank()) {
+				loginNames.add(row.getLoginname());
+			}
+		}
+		Set<String> existingLoginNames = loginNames.isEmpty() ? Set.of()
+				: userRepository.findExistingLoginNames(loginNames);
+
+		for (int i = 0; i < results.length; i++) {
+			UserImportRow row = chunk.get(i);
+			String loginName = row.getLoginname();
+			if (loginName == null || loginName.isBlank() || row.getPassword() == null || row.getPassword().isEmpty()) {
+				results[i] = createResult(firstRow + i, row, STATUS_INVALID, null, "Login name and password required.");
+			} else if (existingLoginNames.contains(loginName) || !importedLoginNames.add(loginName)) {
+				results[i] = createResult(firstRow + i, row, STATUS_DUPLICATE, null, "User with same login exists.");
+			}
+		}
+
+		String[] passwords = new String[results.length];
+		List<CompletableFuture<Void>> hashing = new ArrayList<>(results.length);
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				int index = i;
+				hashing.add(CompletableFuture.runAsync(() -> {
+					try {
+						passwords[index] = passwordEncoder.encode(chunk.get(index).getPassword());
+					} catch (RuntimeException e) {
+						results[index] = createResult(firstRow + index, chunk.get(index), STATUS_FAILED, null,
+								e.getMessage());
+					}
+				}, hashingExecutor));
+			}
+		}
+		CompletableFuture.allOf(hashing.toArray(CompletableFuture[]::new)).join();
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] != null && STATUS_FAILED.equals(results[i].getStatus())) {
+				// not created, a later row may use the login name
+				importedLoginNames.remove(chunk.get(i).getLoginname());
+			}
+		}
+
+		List<PersistenceUser> users = new ArrayList<>();
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				users.add(createUser(chunk.get(i), passwords[i]));
+			}
+		}
+		try {
+			persist(users);
+		} catch (RuntimeException e) {
+			log.warn("Cannot import chunk starting at row {}.", firstRow, e);
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] == null) {
+					results[i] = createResult(firstRow + i, chunk.get(i), STATUS_FAILED, null, e.getMessage());
+					importedLoginNames.remove(chunk.get(i).getLoginname());
+				}
+			}
+			users.clear();
+		}
+
+		Iterator<PersistenceUser> createdUsers = users.iterator();
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				PersistenceUser user = createdUsers.next();
+				results[i] = createResult(firstRow + i, chunk.get(i), STATUS_CREATED, user.getUuid(), null);
+				eventPublisher.publishEvent(new UserChangedEvent(user.getUuid(), user.getLoginName()));
+			}
+			resultWriter.writeValue(generator, results[i]);
+		}
+		generator.flush();
+	}
+
+	private UserImportResult createResult(int row, UserImportRow importRow, String status, UUID uuid,
+			String message) {
+		return new UserImportResult(row, importRow.getLoginname(), status, uuid, message);
+	}
+
+	private PersistenceUser createUser(UserImportRow row, String encodedPassword) {
+		return PersistenceUser.builder().loginName(row.getLoginname()).password(encodedPassword)
+				.roles(UserRole.toMask(UserRole.USER)).email(row.getEmail()).displayName(row.getDisplayname())
+				.build();
+	}
+
+	/**
+	 * Insert all users in one transaction. The inserts are sent in JDBC batches
+	 * as configured by <code>hibernate.jdbc.batch_size</code>.
+	 */
+	private void persist(List<PersistenceUser> users) {
+		if (users.isEmpty()) {
+			return;
+		}
+		transactionTemplate.executeWithoutResult(status -> {
+			users.forEach(entityManager::persist);
+			entityManager.flush();
+			entityManager.clear();
+		});
+	}
+}
@@ -0,0 +1,301 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserDirectoryState;
+import de.futuresqr.server.model.backend.UserProjection;
+import de.futuresqr.server.model.backend.UserVcsName;
+import de.futuresqr.server.restdata.UserRepository;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Base of the in-memory indexes over all users. The index is built once on
+ * first use and updated on every committed {@link UserChangedEvent}.
+ * <p>
+ * Changed users are collected and loaded in background by one batch of queries
+ * outside of the lock. Only applying the loaded users blocks the readers. A
+ * burst of events, e.g. of an import, is applied in few batches. Users of a
+ * failed update are kept for the next update.
+ * <p>
+ * Changes of other nodes do not raise local events. A read compares the
+ * {@link UserDirectoryVersion} with the version of the index and on a change
+ * the users changed since are updated in background. A smaller user count
+ * reveals deleted users, which cannot be queried, and rebuilds the index.
+ * 
+ * @author Robert Breunung
+ */
+@Slf4j
+abstract class UserIndex implements DisposableBean {
+
+	/**
+	 * The state of changed users. Deleted users are missing.
+	 */
+	@Value
+	static class ChangedUsers {
+		private Set<UUID> uuids;
+		private Map<UUID, UserProjection> users;
+		private Map<UUID, List<String>> vcsNames;
+
+		List<String> getVcsNames(UUID uuid) {
+			return vcsNames.getOrDefault(uuid, List.of());
+		}
+	}
+
+	/** Maximal number of ids per <code>IN</code> query. */
+	private static final int CHUNK_SIZE = 500;
+
+	/** Guards the index of the subclass and {@link #built}. */
+	protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private boolean built;
+
+	private final ExecutorService executor;
+
+	private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+	private final AtomicBoolean syncScheduled = new AtomicBoolean();
+
+	/** The directory state the index reflects, replaced by the executor. */
+	private volatile UserDirectoryState syncedState;
+
+	@Autowired
+	protected PrimaryReads primaryReads;
+
+	@Autowired
+	protected UserRepository userRepository;
+
+	@Autowired
+	protected UserDirectoryVersion userDirectoryVersion;
+
+	protected UserIndex(String threadNamePrefix) {
+		executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory(threadNamePrefix));
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Load the given users and apply them to the index in one pass.
+	 */
+	public void update(Collection<UUID> uuids) {
+		if (uuids.isEmpty() || !isBuilt()) {
+			// the initial build reads the change
+			return;
+		}
+		ChangedUsers changes = primaryReads.execute(() -> load(uuids));
+		lock.writeLock().lock();
+		try {
+			apply(changes);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Read all users into the empty index. Runs within a read-only transaction
+	 * and with the write lock held.
+	 */
+	protected abstract void build();
+
+	/**
+	 * Replace the entries of the changed users. Runs with the write lock held.
+	 */
+	protected abstract void apply(ChangedUsers changes);
+
+	/**
+	 * Remove all entries before a rebuild. Runs with the write lock held.
+	 */
+	protected abstract void clear();
+
+	/**
+	 * Build the index on first use and schedule an update for changes of other
+	 * nodes. Readers call this before taking the read lock.
+	 */
+	protected void ensureBuilt() {
+		if (isBuilt()) {
+			checkVersion();
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			if (!built) {
+				// changes after the state are read by the build or the next update
+				syncedState = userDirectoryVersion.getState();
+				primaryReads.execute(() -> {
+					build();
+					return null;
+				});
+				built = true;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void onApplicationReady() {
+		ensureBuilt();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		pending.add(event.getUuid());
+		if (updateScheduled.compareAndSet(false, true)) {
+			executor.execute(this::updatePending);
+		}
+	}
+
+	void updatePending() {
+		// events after this point schedule another update
+		updateScheduled.set(false);
+		Set<UUID> uuids = new LinkedHashSet<>();
+		for (Iterator<UUID> iterator = pending.iterator(); iterator.hasNext();) {
+			uuids.add(iterator.next());
+			iterator.remove();
+		}
+		try {
+			update(uuids);
+		} catch (RuntimeException e) {
+			log.error("Cannot update {} users of {}.", uuids.size(), getClass().getSimpleName(), e);
+			// retried by the next event or the next read
+			pending.addAll(uuids);
+		}
+	}
+
+	/**
+	 * Update the users changed since the last synchronization, e.g. by another
+	 * node, and the users of failed updates.
+	 */
+	void sync() {
+		syncScheduled.set(false);
+		UserDirectoryState previous = syncedState;
+		UserDirectoryState target = userDirectoryVersion.getState();
+		try {
+			if (target.getUserCount() < previous.getUserCount()) {
+				rebuild();
+			} else {
+				Set<UUID> uuids = new LinkedHashSet<>(primaryReads
+						.execute(() -> userRepository.findUuidsChangedSince(getLastChange(previous))));
+				uuids.addAll(pending);
+				update(uuids);
+				pending.removeAll(uuids);
+			}
+			syncedState = target;
+		} catch (RuntimeException e) {
+			log.error("Cannot synchronize {} with the user directory.", getClass().getSimpleName(), e);
+		}
+	}
+
+	private void checkVersion() {
+		UserDirectoryState current = userDirectoryVersion.getState();
+		boolean failed = !pending.isEmpty() && !updateScheduled.get();
+		if ((failed || !isSame(current, syncedState)) && syncScheduled.compareAndSet(false, true)) {
+			executor.execute(this::sync);
+		}
+	}
+
+	private void rebuild() {
+		lock.writeLock().lock();
+		try {
+			clear();
+			primaryReads.execute(() -> {
+				build();
+				return null;
+			});
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * The directory version is read in second precision, so the users of that
+	 * second are read again.
+	 */
+	private Instant getLastChange(UserDirectoryState state) {
+		return state.getLastChangeDate() == null ? Instant.EPOCH
+				: state.getLastChangeDate().truncatedTo(ChronoUnit.SECONDS);
+	}
+
+	private static boolean isSame(UserDirectoryState current, UserDirectoryState synced) {
+		return current.getUserCount() == synced.getUserCount()
+				&& Objects.equals(current.getLastChangeDate(), synced.getLastChangeDate());
+	}
+
+	private boolean isBuilt() {
+		lock.readLock().lock();
+		try {
+			return built;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private ChangedUsers load(Collection<UUID> uuids) {
+		Map<UUID, UserProjection> users = new HashMap<>(uuids.size() * 2);
+		Map<UUID, List<String>> vcsNames = new HashMap<>();
+		List<UUID> ids = new ArrayList<>(uuids);
+		for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+			List<UUID> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+			for (PersistenceUser user : userRepository.findAllById(chunk)) {
+				users.put(user.getUuid(), user);
+			}
+			for (UserVcsName row : userRepository.findVcsNamesByUuids(chunk)) {
+				vcsNames.computeIfAbsent(row.getUuid(), k -> new ArrayList<>(2)).add(row.getVcsName());
+			}
+		}
+		return new ChangedUsers(Set.copyOf(uuids), users, vcsNames);
+	}
+}
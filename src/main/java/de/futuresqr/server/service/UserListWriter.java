@@ -0,0 +1,92 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import de.futuresqr.server.model.frontend.FrontendUser;
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * This service writes user listings as JSON array directly from a database
+ * cursor. Only one row is held in memory at a time, independent of the number
+ * of users.
+ * 
+ * @author Robert Breunung
+ */
+@Service
+public class UserListWriter {
+
+	private final ObjectMapper objectMapper;
+	private final ObjectWriter frontendUserWriter;
+	private final ObjectWriter simpleUserWriter;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	public UserListWriter(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		frontendUserWriter = objectMapper.writerFor(FrontendUser.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		simpleUserWriter = objectMapper.writerFor(SimpleUserDto.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	@Transactional(readOnly = true)
+	public void writeAdminUserList(OutputStream outputStream) throws IOException {
+		writeArray(outputStream, userRepository.streamUserProjections(), FrontendUser::fromUserProjection,
+				frontendUserWriter);
+	}
+
+	@Transactional(readOnly = true)
+	public void writeSimpleUserList(OutputStream outputStream) throws IOException {
+		writeArray(outputStream, userRepository.streamSimpleUsers(), Function.identity(), simpleUserWriter);
+	}
+
+	private <S, T> void writeArray(OutputStream outputStream, Stream<S> source, Function<S, T> mapper,
+			ObjectWriter writer) throws IOException {
+		try (Stream<S> rows = source; JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+			generator.writeStartArray();
+			Iterator<S> iterator = rows.iterator();
+			while (iterator.hasNext()) {
+				writer.writeValue(generator, mapper.apply(iterator.next()));
+			}
+			generator.writeEndArray();
+		}
+	}
+}
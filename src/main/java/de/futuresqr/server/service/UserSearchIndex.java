@@ -0,0 +1,376 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import de.futuresqr.server.model.backend.UserProjection;
+import de.futuresqr.server.model.backend.UserVcsName;
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory trigram index over login name, display name, email and VCS names of
+ * all users. It replaces leading wildcard <code>LIKE</code> scans for type
+ * ahead searches.
+ * <p>
+ * Every text is indexed with all of its trigrams for substring searches. Each
+ * word of a text additionally contributes its first one and two characters
+ * padded with blanks, so that queries shorter than three characters find word
+ * prefixes. The index is built once at startup and updated per user on every
+ * committed {@link UserChangedEvent}, see {@link UserIndex}.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+@Slf4j
+public class UserSearchIndex extends UserIndex {
+
+	/** Maximal number of results of a single search. */
+	public static final int LIMIT_MAX = 100;
+
+	private static final int GRAM_LENGTH = 3;
+
+	private static final int RANK_LOGIN_NAME = 0;
+	private static final int RANK_NAME_PREFIX = 1;
+	private static final int RANK_WORD_PREFIX = 2;
+	private static final int RANK_SUBSTRING = 3;
+
+	/**
+	 * Searchable state of a single user.
+	 */
+	private static class Entry {
+		private final int id;
+		private final UUID uuid;
+		private final UUID avatarId;
+		private final boolean banned;
+		private final String displayName;
+		/** Lower case texts. Login name first and display name second. */
+		private final String[] texts;
+
+		private Entry(int id, UserProjection user, Collection<String> vcsNames) {
+			this.id = id;
+			uuid = user.getUuid();
+			avatarId = user.getAvatarId();
+			banned = user.isBanned();
+			displayName = user.getDisplayName() == null ? "" : user.getDisplayName();
+			texts = Stream.concat(Stream.of(user.getLoginName(), displayName, user.getEmail()), vcsNames.stream())
+					.map(UserSearchIndex::normalize).toArray(String[]::new);
+		}
+
+		private Set<String> getGrams() {
+			Set<String> grams = new HashSet<>();
+			for (String text : texts) {
+				addGrams(text, grams);
+			}
+			return grams;
+		}
+	}
+
+	/**
+	 * A search result with its rank.
+	 */
+	@Value
+	private static class Match {
+		private int rank;
+		private Entry entry;
+	}
+
+	/**
+	 * Sorted set of primitive entry ids. Ids are assigned in ascending order, so
+	 * that adding a new entry appends.
+	 */
+	private static class Postings {
+		private int[] ids = new int[4];
+		private int size;
+
+		private void add(int id) {
+			int index = Arrays.binarySearch(ids, 0, size, id);
+			if (index >= 0) {
+				return;
+			}
+			index = -index - 1;
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			System.arraycopy(ids, index, ids, index + 1, size - index);
+			ids[index] = id;
+			size++;
+		}
+
+		private boolean contains(int id) {
+			return Arrays.binarySearch(ids, 0, size, id) >= 0;
+		}
+
+		private void remove(int id) {
+			int index = Arrays.binarySearch(ids, 0, size, id);
+			if (index >= 0) {
+				System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+				size--;
+			}
+		}
+	}
+
+	private static final Comparator<Match> ORDER = Comparator.comparingInt(Match::getRank)
+			.thenComparing(m -> m.getEntry().displayName, String.CASE_INSENSITIVE_ORDER)
+			.thenComparing(m -> m.getEntry().uuid);
+
+	/** Entries by id. Removed entries leave a gap. */
+	private final List<Entry> entries = new ArrayList<>();
+
+	private final Map<UUID, Entry> entriesByUuid = new HashMap<>();
+
+	private final Map<String, Postings> postings = new HashMap<>();
+
+	public UserSearchIndex() {
+		super("user-search-index-");
+	}
+
+	/**
+	 * Search users by a part of their login name, display name, email or VCS
+	 * names. Queries shorter than three characters match word prefixes only.
+	 * 
+	 * @param query         The case insensitive query.
+	 * @param limit         The maximal number of results.
+	 * @param includeBanned Whether banned users are part of the result.
+	 * @return Matching users ranked by exact login name, name prefix, word prefix
+	 *         and substring matches, each ordered by display name.
+	 */
+	public List<SimpleUserDto> search(String query, int limit, boolean includeBanned) {
+		String normalizedQuery = normalize(query);
+		if (normalizedQuery.isEmpty() || limit < 1) {
+			return List.of();
+		}
+		int maxResults = Math.min(limit, LIMIT_MAX);
+		ensureBuilt();
+
+		lock.readLock().lock();
+		try {
+			Postings[] lists = getQueryGrams(normalizedQuery).stream().map(postings::get).toArray(Postings[]::new);
+			if (Arrays.stream(lists).anyMatch(p -> p == null)) {
+				return List.of();
+			}
+			Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+
+			PriorityQueue<Match> best = new PriorityQueue<>(maxResults + 1, ORDER.reversed());
+			Postings smallest = lists[0];
+			candidates: for (int i = 0; i < smallest.size; i++) {
+				int id = smallest.ids[i];
+				for (int l = 1; l < lists.length; l++) {
+					if (!lists[l].contains(id)) {
+						continue candidates;
+					}
+				}
+				Entry entry = entries.get(id);
+				if (entry.banned && !includeBanned) {
+					continue;
+				}
+				int rank = rank(entry, normalizedQuery);
+				if (rank >= 0) {
+					best.add(new Match(rank, entry));
+					if (best.size() > maxResults) {
+						best.poll();
+					}
+				}
+			}
+			return best.stream().sorted(ORDER)
+					.map(m -> new SimpleUserDto(m.getEntry().uuid, m.getEntry().displayName, m.getEntry().avatarId))
+					.toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	protected void clear() {
+		entries.clear();
+		entriesByUuid.clear();
+		postings.clear();
+	}
+
+	@Override
+	protected void apply(ChangedUsers changes) {
+		for (UUID uuid : changes.getUuids()) {
+			UserProjection user = changes.getUsers().get(uuid);
+			if (user != null) {
+				put(user, changes.getVcsNames(uuid));
+			} else {
+				remove(uuid);
+			}
+		}
+	}
+
+	/**
+	 * Add or replace the entry of a user. Caller must hold the write lock.
+	 */
+	void put(UserProjection user, Collection<String> vcsNames) {
+		Entry previous = entriesByUuid.get(user.getUuid());
+		int id;
+		if (previous == null) {
+			id = entries.size();
+			entries.add(null);
+		} else {
+			id = previous.id;
+			removePostings(previous);
+		}
+		Entry entry = new Entry(id, user, vcsNames);
+		entries.set(id, entry);
+		entriesByUuid.put(entry.uuid, entry);
+		for (String gram : entry.getGrams()) {
+			postings.computeIfAbsent(gram, g -> new Postings()).add(id);
+		}
+	}
+
+	/**
+	 * Remove the entry of a user. Caller must hold the write lock.
+	 */
+	void remove(UUID uuid) {
+		Entry entry = entriesByUuid.remove(uuid);
+		if (entry != null) {
+			entries.set(entry.id, null);
+			removePostings(entry);
+		}
+	}
+
+	/**
+	 * @return The number of indexed users.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entriesByUuid.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	protected void build() {
+		long start = System.nanoTime();
+		Map<UUID, List<String>> vcsNames = new HashMap<>();
+		try (Stream<UserVcsName> rows = userRepository.streamVcsNames()) {
+			rows.forEach(
+					row -> vcsNames.computeIfAbsent(row.getUuid(), k -> new ArrayList<>(2)).add(row.getVcsName()));
+		}
+		try (Stream<UserProjection> rows = userRepository.streamUserProjections()) {
+			rows.forEach(user -> put(user, vcsNames.getOrDefault(user.getUuid(), List.of())));
+		}
+		log.info("User search index built with {} users and {} grams in {} ms.", entriesByUuid.size(),
+				postings.size(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+	private void removePostings(Entry entry) {
+		for (String gram : entry.getGrams()) {
+			Postings list = postings.get(gram);
+			if (list != null) {
+				list.remove(entry.id);
+				if (list.size == 0) {
+					postings.remove(gram);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the trigrams of a text and the padded prefixes of its words.
+	 */
+	static void addGrams(String text, Set<String> grams) {
+		for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+			grams.add(text.substring(i, i + GRAM_LENGTH));
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (isWordStart(text, i)) {
+				grams.add("  " + text.charAt(i));
+				if (i + 1 < text.length() && Character.isLetterOrDigit(text.charAt(i + 1))) {
+					grams.add(" " + text.substring(i, i + 2));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param query A normalized query.
+	 * @return The grams which each match has to contain.
+	 */
+	static Set<String> getQueryGrams(String query) {
+		if (query.length() < GRAM_LENGTH) {
+			return Set.of(" ".repeat(GRAM_LENGTH - query.length()) + query);
+		}
+		Set<String> grams = new HashSet<>();
+		for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+			grams.add(query.substring(i, i + GRAM_LENGTH));
+		}
+		return grams;
+	}
+
+	static String normalize(String text) {
+		return text == null ? "" : text.strip().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Trigrams do not guarantee a contiguous match, so each candidate is verified.
+	 * 
+	 * @return The rank of the entry or <code>-1</code> if it does not match.
+	 */
+	private static int rank(Entry entry, String query) {
+		if (entry.texts[0].equals(query)) {
+			return RANK_LOGIN_NAME;
+		}
+		if (entry.texts[0].startsWith(query) || entry.texts[1].startsWith(query)) {
+			return RANK_NAME_PREFIX;
+		}
+		boolean substring = false;
+		for (String text : entry.texts) {
+			int index = text.indexOf(query);
+			while (index >= 0) {
+				if (isWordStart(text, index)) {
+					return RANK_WORD_PREFIX;
+				}
+				substring = true;
+				index = text.indexOf(query, index + 1);
+			}
+		}
+		return substring && query.length() >= GRAM_LENGTH ? RANK_SUBSTRING : -1;
+	}
+
+	private static boolean isWordStart(String text, int index) {
+		return Character.isLetterOrDigit(text.charAt(index))
+				&& (index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1)));
+	}
+}
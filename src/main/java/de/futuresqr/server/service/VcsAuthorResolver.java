@@ -0,0 +1,227 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import de.futuresqr.server.model.backend.UserVcsName;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves commit authors of Git and SVN to FutureSQR users by the VCS names of
+ * the users. All VCS names are held in memory, so that the history of a large
+ * repository is resolved without a query per commit.
+ * <p>
+ * An author is matched in this order: the exact VCS name, the case folded VCS
+ * name, the email of a <code>Name &lt;email&gt;</code> form and finally the
+ * name. A key claimed by more than one user does not resolve.
+ * <p>
+ * The keys are updated on every committed {@link UserChangedEvent}, see
+ * {@link UserIndex}.
+ * 
+ * @author Robert Breunung
+ */
+@Component
+@Slf4j
+public class VcsAuthorResolver extends UserIndex {
+
+	private static final Pattern NAME_AND_EMAIL = Pattern.compile("^(.*?)\\s*<([^<>]*)>$");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final char KIND_EXACT = '=';
+	private static final char KIND_FOLDED = '~';
+	private static final char KIND_EMAIL = '@';
+	private static final char KIND_NAME = 'n';
+
+	/** The users claiming a key. Keys are prefixed by their kind. */
+	private final Map<String, List<UUID>> owners = new HashMap<>();
+
+	/** The keys of each user for incremental updates. */
+	private final Map<UUID, Set<String>> keysByUser = new HashMap<>();
+
+	public VcsAuthorResolver() {
+		super("vcs-author-resolver-");
+	}
+
+	/**
+	 * @param author A commit author like <code>jdoe</code> or
+	 *               <code>John Doe &lt;jdoe@example.org&gt;</code>.
+	 * @return The user or empty if unknown or ambiguous.
+	 */
+	public Optional<UUID> resolve(String author) {
+		ensureBuilt();
+		lock.readLock().lock();
+		try {
+			return Optional.ofNullable(lookup(author));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Resolve many authors at once. Repeated authors are looked up once.
+	 * 
+	 * @return The users of all resolvable authors by author.
+	 */
+	public Map<String, UUID> resolveAll(Collection<String> authors) {
+		ensureBuilt();
+		Map<String, UUID> result = new HashMap<>();
+		lock.readLock().lock();
+		try {
+			for (String author : authors) {
+				if (author != null && !result.containsKey(author)) {
+					UUID uuid = lookup(author);
+					if (uuid != null) {
+						result.put(author, uuid);
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return result;
+	}
+
+	@Override
+	protected void clear() {
+		owners.clear();
+		keysByUser.clear();
+	}
+
+	@Override
+	protected void apply(ChangedUsers changes) {
+		for (UUID uuid : changes.getUuids()) {
+			remove(uuid);
+			put(uuid, changes.getVcsNames(uuid));
+		}
+	}
+
+	/**
+	 * @return All keys of an author or VCS name in order of precedence.
+	 */
+	static Set<String> getKeys(String vcsName) {
+		Set<String> keys = new LinkedHashSet<>();
+		String trimmed = vcsName.strip();
+		if (trimmed.isEmpty()) {
+			return keys;
+		}
+		keys.add(KIND_EXACT + trimmed);
+		keys.add(KIND_FOLDED + fold(trimmed));
+
+		Matcher matcher = NAME_AND_EMAIL.matcher(trimmed);
+		if (matcher.matches()) {
+			addKey(keys, KIND_EMAIL, matcher.group(2));
+			addKey(keys, KIND_NAME, matcher.group(1));
+		} else if (trimmed.indexOf('@') > 0) {
+			addKey(keys, KIND_EMAIL, trimmed);
+		} else {
+			addKey(keys, KIND_NAME, trimmed);
+		}
+		return keys;
+	}
+
+	private static void addKey(Set<String> keys, char kind, String value) {
+		String folded = fold(value);
+		if (!folded.isEmpty()) {
+			keys.add(kind + folded);
+		}
+	}
+
+	private static String fold(String value) {
+		return WHITESPACE.matcher(value.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+	}
+
+	@Override
+	protected void build() {
+		long start = System.nanoTime();
+		try (Stream<UserVcsName> rows = userRepository.streamVcsNames()) {
+			rows.forEach(row -> put(row.getUuid(), List.of(row.getVcsName())));
+		}
+		log.info("VCS author resolver built with {} users and {} keys in {} ms.", keysByUser.size(), owners.size(),
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Caller must hold the read lock.
+	 */
+	private UUID lookup(String author) {
+		for (String key : getKeys(author)) {
+			List<UUID> users = owners.get(key);
+			if (users != null && users.size() == 1) {
+				return users.get(0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Add VCS names of a user. Caller must hold the write lock.
+	 */
+	private void put(UUID uuid, Collection<String> vcsNames) {
+		for (String vcsName : vcsNames) {
+			if (vcsName == null) {
+				continue;
+			}
+			Set<String> userKeys = keysByUser.computeIfAbsent(uuid, k -> new LinkedHashSet<>());
+			for (String key : getKeys(vcsName)) {
+				if (userKeys.add(key)) {
+					owners.computeIfAbsent(key, k -> new ArrayList<>(1)).add(uuid);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove all VCS names of a user. Caller must hold the write lock.
+	 */
+	private void remove(UUID uuid) {
+		Set<String> userKeys = keysByUser.remove(uuid);
+		if (userKeys == null) {
+			return;
+		}
+		for (String key : userKeys) {
+			List<UUID> users = owners.get(key);
+			if (users != null) {
+				users.remove(uuid);
+				if (users.isEmpty()) {
+					owners.remove(key);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.CsrfTokenRepository;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.WebUtils;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Stateless CSRF tokens. A token is the issue time, a random nonce and an HMAC
+ * of both and the name of the authenticated user, so it is verified without
+ * any storage and is not valid for another user or after the login. The nonce
+ * makes every token unique, also for anonymous clients in the same second. As with the
+ * {@link org.springframework.security.web.csrf.CookieCsrfTokenRepository} the
+ * client sends the token of the readable cookie as header or parameter.
+ * <p>
+ * The token of the new session is answered by the login itself, see
+ * {@link #issueToken(HttpServletRequest, HttpServletResponse)}.
+ * 
+ * @author Robert Breunung
+ */
+public class HmacCsrfTokenRepository implements CsrfTokenRepository {
+
+	public static final String COOKIE_NAME = "XSRF-TOKEN";
+	public static final String HEADER_NAME = "X-XSRF-TOKEN";
+	public static final String PARAMETER_NAME = "_csrf";
+
+	private static final String ANONYMOUS = "";
+	private static final HexFormat HEX = HexFormat.of();
+	private static final int NONCE_LENGTH = 16;
+	/** Truncated signature of 128 bits. */
+	private static final int SIGNATURE_LENGTH = 16;
+
+	private final Clock clock;
+	private final HmacKey key;
+	private final long maxAge;
+	private final SecureRandom random = new SecureRandom();
+
+	public HmacCsrfTokenRepository(byte[] secret, Duration maxAge) {
+		this(secret, maxAge, Clock.systemUTC());
+	}
+
+	HmacCsrfTokenRepository(byte[] secret, Duration maxAge, Clock clock) {
+		this.clock = clock;
+		this.key = new HmacKey(secret);
+		this.maxAge = maxAge.toSeconds();
+	}
+
+	@Override
+	public CsrfToken generateToken(HttpServletRequest request) {
+		return generateToken(getBinding());
+	}
+
+	@Override
+	public void saveToken(CsrfToken token, HttpServletRequest request, HttpServletResponse response) {
+		String value = token != null ? token.getToken() : "";
+		String path = StringUtils.hasLength(request.getContextPath()) ? request.getContextPath() : "/";
+		ResponseCookie.ResponseCookieBuilder cookie = ResponseCookie.from(COOKIE_NAME, value).path(path)
+				.httpOnly(false).secure(request.isSecure()).sameSite("Lax");
+		if (token == null) {
+			cookie.maxAge(Duration.ZERO);
+		}
+		response.addHeader(HttpHeaders.SET_COOKIE, cookie.build().toString());
+	}
+
+	/**
+	 * @return The token of the cookie, if it is valid for the current user.
+	 */
+	@Override
+	public CsrfToken loadToken(HttpServletRequest request) {
+		Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+		if (cookie == null || !isValid(cookie.getValue())) {
+			return null;
+		}
+		return new DefaultCsrfToken(HEADER_NAME, PARAMETER_NAME, cookie.getValue());
+	}
+
+	/**
+	 * Answer a token for the current user as cookie and header. A login calls
+	 * this after the authentication, so that the client does not need to request
+	 * the token of the new session.
+	 */
+	public CsrfToken issueToken(HttpServletRequest request, HttpServletResponse response) {
+		return issueToken(getBinding(), request, response);
+	}
+
+	/**
+	 * Answer a token for the given user as cookie and header, e.g. on a token
+	 * refresh, which is not authenticated by the expired access token.
+	 */
+	public CsrfToken issueToken(String loginName, HttpServletRequest request, HttpServletResponse response) {
+		CsrfToken token = generateToken(loginName);
+		saveToken(token, request, response);
+		response.setHeader(token.getHeaderName(), token.getToken());
+		return token;
+	}
+
+	boolean isValid(String value) {
+		if (!StringUtils.hasText(value)) {
+			return false;
+		}
+		int separator = value.indexOf('-');
+		if (separator <= 0 || separator > 16) {
+			return false;
+		}
+		int nonceSeparator = value.indexOf('-', separator + 1);
+		if (nonceSeparator != separator + 1 + 2 * NONCE_LENGTH) {
+			return false;
+		}
+		long issuedAt;
+		try {
+			issuedAt = Long.parseUnsignedLong(value, 0, separator, 16);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		long now = clock.millis() / 1000;
+		if (issuedAt > now + 60 || issuedAt + maxAge <= now) {
+			return false;
+		}
+		String nonce = value.substring(separator + 1, nonceSeparator);
+		byte[] expected = sign(getBinding(), issuedAt, nonce).getBytes(UTF_8);
+		return MessageDigest.isEqual(expected, value.substring(nonceSeparator + 1).getBytes(UTF_8));
+	}
+
+	private CsrfToken generateToken(String binding) {
+		long issuedAt = clock.millis() / 1000;
+		byte[] nonceBytes = new byte[NONCE_LENGTH];
+		random.nextBytes(nonceBytes);
+		String nonce = HEX.formatHex(nonceBytes);
+		return new DefaultCsrfToken(HEADER_NAME, PARAMETER_NAME,
+				Long.toHexString(issuedAt) + '-' + nonce + '-' + sign(binding, issuedAt, nonce));
+	}
+
+	private String sign(String binding, long issuedAt, String nonce) {
+		byte[] signature = key.sign((binding + '\n' + issuedAt + '\n' + nonce).getBytes(UTF_8));
+		return HEX.formatHex(Arrays.copyOf(signature, SIGNATURE_LENGTH));
+	}
+
+	private static String getBinding() {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication == null || !authentication.isAuthenticated()
+				|| authentication instanceof AnonymousAuthenticationToken) {
+			return ANONYMOUS;
+		}
+		return authentication.getName();
+	}
+}
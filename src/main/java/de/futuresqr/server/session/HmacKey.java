@@ -0,0 +1,63 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.util.Assert;
+
+/**
+ * A secret for HMAC-SHA256 signatures with one initialized {@link Mac} per
+ * thread, as creating a MAC is more expensive than signing a short payload.
+ * 
+ * @author Robert Breunung
+ */
+class HmacKey {
+
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private final ThreadLocal<Mac> mac;
+
+	HmacKey(byte[] secret) {
+		Assert.isTrue(secret.length >= 32, "Key must have at least 256 bits.");
+		SecretKeySpec keySpec = new SecretKeySpec(Arrays.copyOf(secret, secret.length), ALGORITHM);
+		mac = ThreadLocal.withInitial(() -> {
+			try {
+				Mac result = Mac.getInstance(ALGORITHM);
+				result.init(keySpec);
+				return result;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException("HMAC-SHA256 is not available.", e);
+			}
+		});
+	}
+
+	byte[] sign(byte[] payload) {
+		return mac.get().doFinal(payload);
+	}
+}
@@ -0,0 +1,347 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static org.springframework.http.HttpHeaders.SET_COOKIE;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.WebUtils;
+
+import de.futuresqr.server.model.backend.FsqrUserDetails;
+import de.futuresqr.server.model.backend.UserRole;
+import de.futuresqr.server.service.SessionPrincipalCache;
+import de.futuresqr.server.service.UserChangedEvent;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores the security context in the table <code>fsqr_session</code> instead of
+ * the servlet session, so that all nodes of a deployment share the login state
+ * and a restart keeps the users logged in. A session row holds the user id and
+ * the bit mask of the granted {@link UserRole}s only. The principal is restored
+ * from the {@link SessionPrincipalCache}.
+ * <p>
+ * The session cookie carries a random token, the table stores its SHA-256 hash.
+ * Every login creates a new session against session fixation. The expiry slides
+ * with the requests of the user, but the row is touched at most once per touch
+ * interval.
+ * <p>
+ * A ban or a revoked role deletes the sessions of the user on every
+ * {@link UserChangedEvent}.
+ * 
+ * @author Robert Breunung
+ */
+@Slf4j
+public class JdbcSecurityContextRepository implements SecurityContextRepository, LogoutHandler {
+
+	public static final String DEFAULT_COOKIE_NAME = "FSQRSESSION";
+
+	private static final String ATTRIBUTE_SESSION_ID = JdbcSecurityContextRepository.class.getName() + ".SESSION_ID";
+	private static final int TOKEN_LENGTH = 32;
+
+	private static final String SQL_COUNT_ACTIVE = "select count(*) from fsqr_session where expiry_date > ?";
+	private static final String SQL_DELETE = "delete from fsqr_session where id = ?";
+	private static final String SQL_DELETE_BY_USER = "delete from fsqr_session where user_uuid = ?";
+	private static final String SQL_INSERT = "insert into fsqr_session (id, user_uuid, roles, created_date, last_access_date, expiry_date) values (?, ?, ?, ?, ?, ?)";
+	private static final String SQL_SELECT = "select user_uuid, roles, last_access_date, expiry_date from fsqr_session where id = ?";
+	private static final String SQL_SELECT_BY_USER = "select id, roles from fsqr_session where user_uuid = ?";
+	private static final String SQL_SELECT_EXPIRED = "select id from fsqr_session where expiry_date < ? order by expiry_date fetch first ? rows only";
+	private static final String SQL_SELECT_USER = "select banned, roles from fsqr_user where uuid = ?";
+	private static final String SQL_TOUCH = "update fsqr_session set last_access_date = ?, expiry_date = ? where id = ?";
+
+	private final int cleanupBatchSize;
+	private final Clock clock;
+	private final String cookieName;
+	private final JdbcTemplate jdbcTemplate;
+	private final SessionPrincipalCache principalCache;
+	private final SecureRandom random = new SecureRandom();
+	private final long timeout;
+	private final long touchInterval;
+
+	public JdbcSecurityContextRepository(JdbcTemplate jdbcTemplate, SessionPrincipalCache principalCache,
+			String cookieName, Duration timeout, Duration touchInterval, int cleanupBatchSize) {
+		this(jdbcTemplate, principalCache, cookieName, timeout, touchInterval, cleanupBatchSize, Clock.systemUTC());
+	}
+
+	JdbcSecurityContextRepository(JdbcTemplate jdbcTemplate, SessionPrincipalCache principalCache, String cookieName,
+			Duration timeout, Duration touchInterval, int cleanupBatchSize, Clock clock) {
+		Assert.notNull(jdbcTemplate, "JDBC template required.");
+		Assert.notNull(principalCache, "Principal cache required.");
+		Assert.hasText(cookieName, "Cookie name required.");
+		Assert.isTrue(timeout.compareTo(touchInterval) > 0, "Session timeout must exceed the touch interval.");
+		this.jdbcTemplate = jdbcTemplate;
+		this.principalCache = principalCache;
+		this.cookieName = cookieName;
+		this.timeout = timeout.toMillis();
+		this.touchInterval = touchInterval.toMillis();
+		this.cleanupBatchSize = Math.max(1, cleanupBatchSize);
+		this.clock = clock;
+	}
+
+	@Override
+	public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+		HttpServletRequest request = requestResponseHolder.getRequest();
+		SecurityContext context = SecurityContextHolder.createEmptyContext();
+		byte[] id = getSessionId(request);
+		if (id == null) {
+			return context;
+		}
+		Authentication authentication = loadAuthentication(id);
+		if (authentication != null) {
+			context.setAuthentication(authentication);
+			request.setAttribute(ATTRIBUTE_SESSION_ID, id);
+		}
+		return context;
+	}
+
+	/**
+	 * Store the authentication of a login as new session and answer the session
+	 * cookie. An empty context removes the current session.
+	 */
+	@Override
+	public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+		byte[] currentId = (byte[]) request.getAttribute(ATTRIBUTE_SESSION_ID);
+		if (currentId != null) {
+			// a new login or a logout replaces the current session
+			jdbcTemplate.update(SQL_DELETE, currentId);
+			request.removeAttribute(ATTRIBUTE_SESSION_ID);
+		}
+
+		Authentication authentication = context.getAuthentication();
+		if (authentication == null || !authentication.isAuthenticated()) {
+			if (currentId != null) {
+				writeCookie(request, response, "", Duration.ZERO);
+			}
+			return;
+		}
+		if (!(authentication.getPrincipal() instanceof FsqrUserDetails principal)) {
+			log.warn("Cannot store session of foreign principal {}.", authentication.getName());
+			return;
+		}
+
+		byte[] token = new byte[TOKEN_LENGTH];
+		random.nextBytes(token);
+		String cookieValue = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+		byte[] id = hash(cookieValue);
+		int roles = UserRole.toMask(authentication.getAuthorities());
+		long now = clock.millis();
+		jdbcTemplate.update(SQL_INSERT, id, principal.getUuid(), roles, now, now, now + timeout);
+		request.setAttribute(ATTRIBUTE_SESSION_ID, id);
+		writeCookie(request, response, cookieValue, null);
+		log.debug("Created session of {}.", principal.getUsername());
+	}
+
+	@Override
+	public boolean containsContext(HttpServletRequest request) {
+		if (request.getAttribute(ATTRIBUTE_SESSION_ID) != null) {
+			return true;
+		}
+		byte[] id = getSessionId(request);
+		return id != null && !jdbcTemplate.queryForList(SQL_SELECT, id).isEmpty();
+	}
+
+	@Override
+	public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+		byte[] id = (byte[]) request.getAttribute(ATTRIBUTE_SESSION_ID);
+		if (id == null) {
+			id = getSessionId(request);
+		}
+		if (id != null) {
+			jdbcTemplate.update(SQL_DELETE, id);
+			request.removeAttribute(ATTRIBUTE_SESSION_ID);
+		}
+		writeCookie(request, response, "", Duration.ZERO);
+	}
+
+	/**
+	 * Delete all sessions of a banned or removed user and the sessions which
+	 * grant roles the user has lost. The user is read from the primary, so that
+	 * the change is visible on all nodes at once.
+	 * 
+	 * @return The number of deleted sessions.
+	 */
+	public int deleteRevokedSessions(UUID userUuid) {
+		List<UserRow> users = jdbcTemplate.query(SQL_SELECT_USER,
+				(resultSet, rowNum) -> new UserRow(resultSet.getBoolean(1), resultSet.getInt(2)), userUuid);
+		if (users.isEmpty() || users.get(0).isBanned()) {
+			return jdbcTemplate.update(SQL_DELETE_BY_USER, userUuid);
+		}
+		int revokedRoles = ~users.get(0).getRoles();
+		List<Object[]> ids = new ArrayList<>();
+		jdbcTemplate.query(SQL_SELECT_BY_USER, resultSet -> {
+			if ((resultSet.getInt(2) & revokedRoles) != 0) {
+				ids.add(new Object[] { resultSet.getBytes(1) });
+			}
+		}, userUuid);
+		if (!ids.isEmpty()) {
+			jdbcTemplate.batchUpdate(SQL_DELETE, ids);
+		}
+		return ids.size();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		int deleted = deleteRevokedSessions(event.getUuid());
+		if (deleted > 0) {
+			log.debug("Deleted {} sessions of {}.", deleted, event.getLoginName());
+		}
+	}
+
+	/**
+	 * @return The number of sessions which are not expired.
+	 */
+	public long countActiveSessions() {
+		return jdbcTemplate.queryForObject(SQL_COUNT_ACTIVE, Long.class, clock.millis());
+	}
+
+	/**
+	 * Delete expired sessions in batches, so that a large backlog does not lock
+	 * the table for long.
+	 */
+	@Scheduled(fixedDelayString = "${fsqr.session.cleanup.interval:PT1M}")
+	public void deleteExpiredSessions() {
+		int deleted = deleteExpiredSessions(clock.millis());
+		if (deleted > 0) {
+			log.debug("Deleted {} expired sessions.", deleted);
+		}
+	}
+
+	int deleteExpiredSessions(long now) {
+		int deleted = 0;
+		List<byte[]> ids;
+		do {
+			ids = jdbcTemplate.queryForList(SQL_SELECT_EXPIRED, byte[].class, now, cleanupBatchSize);
+			if (!ids.isEmpty()) {
+				jdbcTemplate.batchUpdate(SQL_DELETE, ids.stream().map(id -> new Object[] { id }).toList());
+				deleted += ids.size();
+			}
+		} while (ids.size() == cleanupBatchSize);
+		return deleted;
+	}
+
+	private Authentication loadAuthentication(byte[] id) {
+		List<SessionRow> sessions = jdbcTemplate.query(SQL_SELECT, JdbcSecurityContextRepository::mapSession, id);
+		if (sessions.isEmpty()) {
+			return null;
+		}
+		SessionRow session = sessions.get(0);
+		long now = clock.millis();
+		if (session.getExpiryDate() <= now) {
+			jdbcTemplate.update(SQL_DELETE, id);
+			return null;
+		}
+		FsqrUserDetails principal = principalCache.get(session.getUserUuid());
+		if (principal == null || !principal.isAccountNonLocked()) {
+			// unknown or banned users lose their sessions
+			jdbcTemplate.update(SQL_DELETE, id);
+			return null;
+		}
+		if (now - session.getLastAccessDate() >= touchInterval) {
+			jdbcTemplate.update(SQL_TOUCH, now, now + timeout, id);
+		}
+		// roles revoked since the login are not granted anymore
+		int roles = session.getRoles() & principal.getRoles();
+		return UsernamePasswordAuthenticationToken.authenticated(principal, null, UserRole.toGrantedAuthorities(roles));
+	}
+
+	private byte[] getSessionId(HttpServletRequest request) {
+		Cookie cookie = WebUtils.getCookie(request, cookieName);
+		if (cookie == null || !StringUtils.hasText(cookie.getValue())) {
+			return null;
+		}
+		byte[] token;
+		try {
+			token = Base64.getUrlDecoder().decode(cookie.getValue());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		return token.length == TOKEN_LENGTH ? hash(cookie.getValue()) : null;
+	}
+
+	private void writeCookie(HttpServletRequest request, HttpServletResponse response, String value,
+			Duration maxAge) {
+		String path = StringUtils.hasLength(request.getContextPath()) ? request.getContextPath() : "/";
+		ResponseCookie.ResponseCookieBuilder cookie = ResponseCookie.from(cookieName, value).path(path).httpOnly(true)
+				.secure(request.isSecure()).sameSite("Lax");
+		if (maxAge != null) {
+			cookie.maxAge(maxAge);
+		}
+		response.addHeader(SET_COOKIE, cookie.build().toString());
+	}
+
+	private static byte[] hash(String token) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+	}
+
+	private static SessionRow mapSession(ResultSet resultSet, int rowNum) throws SQLException {
+		return new SessionRow(resultSet.getObject(1, UUID.class), resultSet.getInt(2), resultSet.getLong(3),
+				resultSet.getLong(4));
+	}
+
+	@Value
+	private static class UserRow {
+		boolean banned;
+		int roles;
+	}
+
+	@Value
+	private static class SessionRow {
+		UUID userUuid;
+		int roles;
+		long lastAccessDate;
+		long expiryDate;
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.util.Assert;
+
+import lombok.Value;
+
+/**
+ * Encodes and verifies compact tokens signed by HMAC-SHA256. The binary
+ * payload holds the format and token type, the id of the signing key, the user
+ * id, the role bit mask, the login, issue and expiry time and the login name.
+ * The token is the payload and the signature, both Base64URL encoded and
+ * separated by a dot. Tokens of another format are rejected.
+ * <p>
+ * Tokens are signed by the first key. The other keys are accepted for
+ * verification only, so a new key is rolled out in front of the list and an old
+ * key is removed once its tokens are expired.
+ * 
+ * @author Robert Breunung
+ */
+public class SignedTokenCodec {
+
+	public enum TokenType {
+		ACCESS, REFRESH
+	}
+
+	/**
+	 * The verified content of a token.
+	 */
+	@Value
+	public static class Token {
+		TokenType type;
+		UUID userUuid;
+		String loginName;
+		/** Bit mask of the granted roles. */
+		int roles;
+		/** Time of the password login, kept by refreshes. */
+		long loginAt;
+		long issuedAt;
+		long expiresAt;
+	}
+
+	/** format and type, key id, uuid, roles, login at, issued at, expires at */
+	private static final int HEADER_LENGTH = 1 + 1 + 16 + 4 + 8 + 8 + 8;
+	/** Marks the format with login time in the high bits of the type byte. */
+	private static final int FORMAT = 0x10;
+	private static final int MAX_TOKEN_LENGTH = 1024;
+
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+	private final HmacKey signingKey;
+	private final Map<Byte, HmacKey> verificationKeys = new LinkedHashMap<>();
+
+	/**
+	 * @param keys The secrets by key id. The first key signs new tokens.
+	 */
+	public SignedTokenCodec(Map<Integer, byte[]> keys) {
+		Assert.notEmpty(keys, "At least one signing key required.");
+		for (Map.Entry<Integer, byte[]> key : keys.entrySet()) {
+			Assert.isTrue(key.getKey() >= 0 && key.getKey() <= 0xff, "Key id must be in the range 0 to 255.");
+			verificationKeys.put(key.getKey().byteValue(), new HmacKey(key.getValue()));
+		}
+		signingKey = verificationKeys.values().iterator().next();
+	}
+
+	/**
+	 * Parse keys of the format <code>id:base64-secret</code>.
+	 */
+	public static Map<Integer, byte[]> parseKeys(List<String> keys) {
+		Map<Integer, byte[]> result = new LinkedHashMap<>();
+		for (String key : keys) {
+			int separator = key.indexOf(':');
+			Assert.isTrue(separator > 0, "Key requires the format id:base64-secret.");
+			result.put(Integer.valueOf(key.substring(0, separator).trim()),
+					Base64.getDecoder().decode(key.substring(separator + 1).trim()));
+		}
+		return result;
+	}
+
+	public String encode(Token token) {
+		byte[] loginName = token.getLoginName().getBytes(UTF_8);
+		ByteBuffer payload = ByteBuffer.allocate(HEADER_LENGTH + loginName.length);
+		payload.put(toTypeByte(token.getType()));
+		payload.put(getSigningKeyId());
+		payload.putLong(token.getUserUuid().getMostSignificantBits());
+		payload.putLong(token.getUserUuid().getLeastSignificantBits());
+		payload.putInt(token.getRoles());
+		payload.putLong(token.getLoginAt());
+		payload.putLong(token.getIssuedAt());
+		payload.putLong(token.getExpiresAt());
+		payload.put(loginName);
+		byte[] bytes = payload.array();
+		return ENCODER.encodeToString(bytes) + '.' + ENCODER.encodeToString(signingKey.sign(bytes));
+	}
+
+	/**
+	 * Verify the signature and the expiry of a token.
+	 * 
+	 * @param value The encoded token.
+	 * @param type  The expected type.
+	 * @param now   Current time in epoch milliseconds.
+	 * @return The token or <code>null</code> for an invalid or expired token.
+	 */
+	public Token decode(String value, TokenType type, long now) {
+		if (value == null || value.length() > MAX_TOKEN_LENGTH) {
+			return null;
+		}
+		int separator = value.indexOf('.');
+		if (separator < 0) {
+			return null;
+		}
+		byte[] bytes;
+		byte[] signature;
+		try {
+			bytes = DECODER.decode(value.substring(0, separator));
+			signature = DECODER.decode(value.substring(separator + 1));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		if (bytes.length <= HEADER_LENGTH || bytes[0] != toTypeByte(type)) {
+			return null;
+		}
+		HmacKey key = verificationKeys.get(bytes[1]);
+		if (key == null || !MessageDigest.isEqual(key.sign(bytes), signature)) {
+			return null;
+		}
+
+		ByteBuffer payload = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+		UUID uuid = new UUID(payload.getLong(), payload.getLong());
+		int roles = payload.getInt();
+		long loginAt = payload.getLong();
+		long issuedAt = payload.getLong();
+		long expiresAt = payload.getLong();
+		if (expiresAt <= now) {
+			return null;
+		}
+		String loginName = new String(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, UTF_8);
+		return new Token(type, uuid, loginName, roles, loginAt, issuedAt, expiresAt);
+	}
+
+	private static byte toTypeByte(TokenType type) {
+		return (byte) (FORMAT | type.ordinal());
+	}
+
+	private byte getSigningKeyId() {
+		return verificationKeys.keySet().iterator().next();
+	}
+}
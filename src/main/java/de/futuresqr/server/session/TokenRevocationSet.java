@@ -0,0 +1,125 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.futuresqr.server.service.UserChangedEvent;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compact set of revoked tokens. Instead of single tokens it keeps the time of
+ * the last revocation per user, every access token issued before is rejected.
+ * A logout revokes all tokens of a single login, identified by the login time
+ * which every refresh carries over. An entry is dropped once all tokens issued
+ * before it are expired.
+ * <p>
+ * Each {@link UserChangedEvent}, e.g. a ban, revokes the access tokens of the
+ * user, so that the client refreshes them. The refresh tokens stay valid,
+ * because the refresh reads the changed user and rejects a banned user. The set
+ * is local to a node. Other nodes accept the access tokens of a banned user
+ * until they expire and keep refreshing the tokens of a logged out login.
+ * 
+ * @author Robert Breunung
+ */
+@Slf4j
+public class TokenRevocationSet {
+
+	private final Clock clock;
+	private final long retention;
+	private final Map<UUID, Long> revocations = new ConcurrentHashMap<>();
+	/** Revocation time by login. */
+	private final Map<Login, Long> revokedLogins = new ConcurrentHashMap<>();
+
+	/**
+	 * @param retention The lifetime of the longest living token.
+	 */
+	public TokenRevocationSet(Duration retention) {
+		this(retention, Clock.systemUTC());
+	}
+
+	TokenRevocationSet(Duration retention, Clock clock) {
+		this.clock = clock;
+		this.retention = retention.toMillis();
+	}
+
+	/**
+	 * Revoke all tokens of the user issued until now.
+	 */
+	public void revoke(UUID userUuid) {
+		long now = clock.millis();
+		revocations.merge(userUuid, now, Math::max);
+		revocations.values().removeIf(revokedAt -> revokedAt < now - retention);
+	}
+
+	/**
+	 * Revoke all tokens of a single login, e.g. on logout.
+	 * 
+	 * @param loginAt The login time carried by all tokens of the login.
+	 */
+	public void revokeLogin(UUID userUuid, long loginAt) {
+		long now = clock.millis();
+		revokedLogins.put(new Login(userUuid, loginAt), now);
+		revokedLogins.values().removeIf(revokedAt -> revokedAt < now - retention);
+	}
+
+	/**
+	 * @return <code>true</code> if the tokens of the user or of the login are
+	 *         revoked. Used for access tokens.
+	 */
+	public boolean isRevoked(UUID userUuid, long issuedAt, long loginAt) {
+		Long revokedAt = revocations.get(userUuid);
+		return revokedAt != null && issuedAt < revokedAt || isLoginRevoked(userUuid, loginAt);
+	}
+
+	/**
+	 * @return <code>true</code> if the login is revoked. Used for refresh tokens.
+	 */
+	public boolean isLoginRevoked(UUID userUuid, long loginAt) {
+		return !revokedLogins.isEmpty() && revokedLogins.containsKey(new Login(userUuid, loginAt));
+	}
+
+	public int size() {
+		return revocations.size() + revokedLogins.size();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	void onUserChanged(UserChangedEvent event) {
+		log.debug("Revoke tokens of {}.", event.getLoginName());
+		revoke(event.getUuid());
+	}
+
+	@Value
+	private static class Login {
+		UUID userUuid;
+		long loginAt;
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpHeaders.SET_COOKIE;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.WebUtils;
+
+import de.futuresqr.server.model.backend.FsqrUserDetails;
+import de.futuresqr.server.model.backend.UserRole;
+import de.futuresqr.server.session.SignedTokenCodec.Token;
+import de.futuresqr.server.session.SignedTokenCodec.TokenType;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stateless alternative to the {@link JdbcSecurityContextRepository}. A login
+ * answers a short living access token and a refresh token as cookies. Each
+ * request is authenticated by the signature of the access token, either from
+ * the cookie or from a bearer authorization header, without any lookup in the
+ * database or a session store. Revoked tokens are rejected by the
+ * {@link TokenRevocationSet}. A logout revokes the tokens of its login,
+ * including the refresh tokens of earlier refreshes.
+ * 
+ * @author Robert Breunung
+ */
+@Slf4j
+public class TokenSecurityContextRepository implements SecurityContextRepository, LogoutHandler {
+
+	public static final String ACCESS_COOKIE_NAME = "FSQRTOKEN";
+	public static final String REFRESH_COOKIE_NAME = "FSQRREFRESH";
+	public static final String REFRESH_PATH = "/rest/user/refresh";
+
+	private static final String BEARER = "Bearer ";
+
+	private final long accessTtl;
+	private final Clock clock;
+	private final SignedTokenCodec codec;
+	private final long refreshTtl;
+	private final TokenRevocationSet revocationSet;
+
+	public TokenSecurityContextRepository(SignedTokenCodec codec, TokenRevocationSet revocationSet,
+			Duration accessTtl, Duration refreshTtl) {
+		this(codec, revocationSet, accessTtl, refreshTtl, Clock.systemUTC());
+	}
+
+	TokenSecurityContextRepository(SignedTokenCodec codec, TokenRevocationSet revocationSet, Duration accessTtl,
+			Duration refreshTtl, Clock clock) {
+		Assert.notNull(codec, "Token codec required.");
+		Assert.notNull(revocationSet, "Revocation set required.");
+		Assert.isTrue(refreshTtl.compareTo(accessTtl) > 0, "Refresh tokens must outlive access tokens.");
+		this.clock = clock;
+		this.codec = codec;
+		this.revocationSet = revocationSet;
+		this.accessTtl = accessTtl.toMillis();
+		this.refreshTtl = refreshTtl.toMillis();
+	}
+
+	@Override
+	public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+		SecurityContext context = SecurityContextHolder.createEmptyContext();
+		Token token = getValidAccessToken(getAccessToken(requestResponseHolder.getRequest()));
+		if (token != null) {
+			context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(token.getLoginName(), null,
+					UserRole.toGrantedAuthorities(token.getRoles())));
+		}
+		return context;
+	}
+
+	/**
+	 * Answer new tokens for the authentication of a login. An empty context
+	 * removes the token cookies.
+	 */
+	@Override
+	public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+		Authentication authentication = context.getAuthentication();
+		if (authentication == null || !authentication.isAuthenticated()) {
+			clearCookies(request, response);
+			return;
+		}
+		if (!(authentication.getPrincipal() instanceof FsqrUserDetails principal)) {
+			log.warn("Cannot issue tokens to foreign principal {}.", authentication.getName());
+			return;
+		}
+		int roles = UserRole.toMask(authentication.getAuthorities());
+		issueTokens(principal, roles, clock.millis(), request, response);
+	}
+
+	@Override
+	public boolean containsContext(HttpServletRequest request) {
+		return getValidAccessToken(getAccessToken(request)) != null;
+	}
+
+	/**
+	 * Revoke all tokens of the login. The refresh cookie is not sent to the
+	 * logout, but all tokens of a login share its login time. An expired access
+	 * token still identifies the login.
+	 */
+	@Override
+	public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+		Token token = codec.decode(getAccessToken(request), TokenType.ACCESS, Long.MIN_VALUE);
+		if (token != null) {
+			revocationSet.revokeLogin(token.getUserUuid(), token.getLoginAt());
+		}
+		clearCookies(request, response);
+	}
+
+	/**
+	 * A change of the user does not revoke the refresh token, the refresh reads
+	 * the changed user.
+	 * 
+	 * @return The verified refresh token of the request or <code>null</code>.
+	 */
+	public Token getRefreshToken(HttpServletRequest request) {
+		Cookie cookie = WebUtils.getCookie(request, REFRESH_COOKIE_NAME);
+		String value = cookie != null ? cookie.getValue() : getBearerToken(request);
+		if (!StringUtils.hasText(value)) {
+			return null;
+		}
+		Token token = codec.decode(value, TokenType.REFRESH, clock.millis());
+		if (token == null || revocationSet.isLoginRevoked(token.getUserUuid(), token.getLoginAt())) {
+			return null;
+		}
+		return token;
+	}
+
+	/**
+	 * Answer new tokens of the login of the refresh token as cookies. Roles
+	 * revoked since the login are not granted anymore.
+	 * 
+	 * @param principal The current user of the refresh token.
+	 * @return The new access token.
+	 */
+	public String refreshTokens(Token refreshToken, FsqrUserDetails principal, HttpServletRequest request,
+			HttpServletResponse response) {
+		return issueTokens(principal, refreshToken.getRoles() & principal.getRoles(), refreshToken.getLoginAt(),
+				request, response);
+	}
+
+	private String issueTokens(FsqrUserDetails principal, int roles, long loginAt, HttpServletRequest request,
+			HttpServletResponse response) {
+		long now = clock.millis();
+		String accessToken = codec.encode(new Token(TokenType.ACCESS, principal.getUuid(), principal.getUsername(),
+				roles, loginAt, now, now + accessTtl));
+		String refreshToken = codec.encode(new Token(TokenType.REFRESH, principal.getUuid(),
+				principal.getUsername(), roles, loginAt, now, now + refreshTtl));
+		writeCookie(request, response, ACCESS_COOKIE_NAME, "/", accessToken, Duration.ofMillis(accessTtl));
+		writeCookie(request, response, REFRESH_COOKIE_NAME, REFRESH_PATH, refreshToken,
+				Duration.ofMillis(refreshTtl));
+		return accessToken;
+	}
+
+	public Duration getAccessTtl() {
+		return Duration.ofMillis(accessTtl);
+	}
+
+	private Token getValidAccessToken(String value) {
+		if (!StringUtils.hasText(value)) {
+			return null;
+		}
+		Token token = codec.decode(value, TokenType.ACCESS, clock.millis());
+		if (token == null || revocationSet.isRevoked(token.getUserUuid(), token.getIssuedAt(), token.getLoginAt())) {
+			return null;
+		}
+		return token;
+	}
+
+	private static String getAccessToken(HttpServletRequest request) {
+		String bearerToken = getBearerToken(request);
+		if (bearerToken != null) {
+			return bearerToken;
+		}
+		Cookie cookie = WebUtils.getCookie(request, ACCESS_COOKIE_NAME);
+		return cookie != null ? cookie.getValue() : null;
+	}
+
+	private static String getBearerToken(HttpServletRequest request) {
+		String authorization = request.getHeader(AUTHORIZATION);
+		if (authorization != null && authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+			return authorization.substring(BEARER.length()).trim();
+		}
+		return null;
+	}
+
+	private void clearCookies(HttpServletRequest request, HttpServletResponse response) {
+		writeCookie(request, response, ACCESS_COOKIE_NAME, "/", "", Duration.ZERO);
+		writeCookie(request, response, REFRESH_COOKIE_NAME, REFRESH_PATH, "", Duration.ZERO);
+	}
+
+	private static void writeCookie(HttpServletRequest request, HttpServletResponse response, String name,
+			String path, String value, Duration maxAge) {
+		String cookiePath = request.getContextPath() + path;
+		response.addHeader(SET_COOKIE, ResponseCookie.from(name, value).path(cookiePath).httpOnly(true)
+				.secure(request.isSecure()).sameSite("Lax").maxAge(maxAge).build().toString());
+	}
+}
@@ -0,0 +1,33 @@
+-- Users of FutureSQR, see PersistenceUser. Table name 'user' is reserved in databases.
+create table fsqr_user (
+	uuid uuid not null,
+	avatar_id uuid,
+	banned boolean not null,
+	banned_date timestamp(6) with time zone,
+	created_date timestamp(6) with time zone,
+	display_name varchar(255),
+	email varchar(255),
+	last_change_date timestamp(6) with time zone,
+	login_name varchar(255),
+	password varchar(255),
+	roles integer not null,
+	version bigint not null,
+	constraint pk_fsqr_user primary key (uuid),
+	constraint uk_fsqr_user_login_name unique (login_name)
+);
+
+-- keyset pagination and the name search order by display name and uuid
+create index ix_fsqr_user_display_name on fsqr_user (display_name, uuid);
+create index ix_fsqr_user_email on fsqr_user (email);
+create index ix_fsqr_user_banned on fsqr_user (banned);
+-- role queries look up all masks granting a role
+create index ix_fsqr_user_roles on fsqr_user (roles);
+
+create table persistence_user_vcs_names (
+	persistence_user_uuid uuid not null,
+	vcs_names varchar(255),
+	constraint fk_vcs_names_fsqr_user foreign key (persistence_user_uuid) references fsqr_user (uuid)
+);
+
+create index ix_vcs_names_user on persistence_user_vcs_names (persistence_user_uuid);
+create index ix_vcs_names_value on persistence_user_vcs_names (vcs_names);
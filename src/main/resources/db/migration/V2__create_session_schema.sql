@@ -0,0 +1,14 @@
+-- Compact login sessions, see JdbcSecurityContextRepository. The id is the SHA-256 hash of the session cookie,
+-- the principal is restored from the user id. Times are epoch milliseconds.
+create table fsqr_session (
+	id binary(32) not null,
+	user_uuid uuid not null,
+	roles integer not null,
+	created_date bigint not null,
+	last_access_date bigint not null,
+	expiry_date bigint not null,
+	constraint pk_fsqr_session primary key (id)
+);
+
+-- the cleanup deletes expired sessions in batches
+create index ix_fsqr_session_expiry_date on fsqr_session (expiry_date);
@@ -0,0 +1,2 @@
+-- a ban or a revoked role deletes all sessions of the user
+create index ix_fsqr_session_user_uuid on fsqr_session (user_uuid);
@@ -0,0 +1,2 @@
+-- the user directory version reads max(last_change_date) up to once per second
+create index ix_fsqr_user_last_change_date on fsqr_user (last_change_date);
@@ -0,0 +1,200 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import de.futuresqr.server.service.UserChangedEvent;
+import de.futuresqr.server.service.UserDetailsCache;
+import de.futuresqr.server.session.JdbcSecurityContextRepository;
+import jakarta.servlet.http.Cookie;
+
+/**
+ * Tests for {@link ReadWriteRoutingDataSource} with two local H2 instances as
+ * primary and replica. The requests carry the cookie of a login session of the
+ * {@link JdbcSecurityContextRepository} and have no servlet session.
+ * 
+ * @author Robert Breunung
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+	private static final String QUERY_BANNED = "select banned from fsqr_user where login_name = ?";
+	private static final String QUERY_DATABASE = "select database()";
+
+	private static final Cookie SESSION_COOKIE = new Cookie(JdbcSecurityContextRepository.DEFAULT_COOKIE_NAME,
+			"session-token");
+
+	private DataSource primary;
+	private DataSource replica;
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+
+	@BeforeEach
+	public void setup() {
+		primary = new DriverManagerDataSource("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1", "sa", "");
+		replica = new DriverManagerDataSource("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", "sa", "");
+		startRequest(SESSION_COOKIE);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+		new JdbcTemplate(primary).execute("drop table if exists fsqr_user");
+		new JdbcTemplate(replica).execute("drop table if exists fsqr_user");
+	}
+
+	@Test
+	public void readOnlyTransaction_noWrite_replica() {
+		TransactionTemplate transaction = createTransaction(Duration.ofHours(1), true);
+
+		assertEquals("REPLICA", queryDatabase(transaction));
+	}
+
+	@Test
+	public void writeTransaction_primary() {
+		TransactionTemplate transaction = createTransaction(Duration.ofHours(1), false);
+
+		assertEquals("PRIMARY", queryDatabase(transaction));
+	}
+
+	@Test
+	public void readOnlyTransaction_sameRequestAfterWrite_primary() {
+		queryDatabase(createTransaction(Duration.ofHours(1), false));
+
+		assertEquals("PRIMARY", queryDatabase(createTransaction(Duration.ofHours(1), true)));
+	}
+
+	@Test
+	public void readOnlyTransaction_jdbcSessionNextRequestWithinLag_primary() {
+		queryDatabase(createTransaction(Duration.ofHours(1), false));
+		Cookie lastWrite = response.getCookie(ReadWriteRoutingDataSource.COOKIE_LAST_WRITE);
+		assertNotNull(lastWrite, "Cookie of the write expected.");
+		// the next request of the browser
+		startRequest(SESSION_COOKIE, lastWrite);
+
+		assertEquals("PRIMARY", queryDatabase(createTransaction(Duration.ofHours(1), true)));
+		assertNull(request.getSession(false), "No servlet session expected.");
+	}
+
+	@Test
+	public void readOnlyTransaction_jdbcSessionNextRequestBeyondLag_replica() {
+		queryDatabase(createTransaction(Duration.ZERO, false));
+		startRequest(SESSION_COOKIE, response.getCookie(ReadWriteRoutingDataSource.COOKIE_LAST_WRITE));
+
+		assertEquals("REPLICA", queryDatabase(createTransaction(Duration.ZERO, true)));
+	}
+
+	@Test
+	public void readOnlyTransaction_jdbcSessionNextRequestWithoutWrite_replica() {
+		queryDatabase(createTransaction(Duration.ofHours(1), true));
+		assertNull(response.getCookie(ReadWriteRoutingDataSource.COOKIE_LAST_WRITE), "No cookie for reads.");
+		startRequest(SESSION_COOKIE);
+
+		assertEquals("REPLICA", queryDatabase(createTransaction(Duration.ofHours(1), true)));
+	}
+
+	@Test
+	public void readOnlyTransaction_noRequestWithPrimaryRead_primary() {
+		RequestContextHolder.resetRequestAttributes();
+		TransactionTemplate transaction = createTransaction(Duration.ofHours(1), true);
+
+		assertEquals("PRIMARY", ReadWriteRoutingDataSource.readFromPrimary(() -> queryDatabase(transaction)));
+	}
+
+	@Test
+	public void primaryReads_banNotReplicated_cacheReloadedWithBan() {
+		// the ban of another session is committed on the primary, the replica lags
+		createUserTable(primary, true);
+		createUserTable(replica, false);
+		TransactionTemplate transaction = createTransaction(Duration.ofHours(1), false);
+		PrimaryReads primaryReads = new PrimaryReads(transaction.getTransactionManager());
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(
+				((DataSourceTransactionManager) transaction.getTransactionManager()).getDataSource());
+		Function<String, UserDetails> loader = name -> primaryReads.execute(() -> User.withUsername(name)
+				.password("").accountLocked(jdbcTemplate.queryForObject(QUERY_BANNED, Boolean.class, name))
+				.build());
+		UserDetailsCache cache = new UserDetailsCache(10, Duration.ofMinutes(5));
+		cache.get("known", name -> User.withUsername(name).password("").build());
+
+		cache.onUserChanged(new UserChangedEvent(UUID.randomUUID(), "known"));
+		UserDetails reloaded = cache.get("known", loader);
+		transaction.setReadOnly(true);
+		boolean bannedOnReplica = transaction
+				.execute(status -> jdbcTemplate.queryForObject(QUERY_BANNED, Boolean.class, "known"));
+
+		assertFalse(bannedOnReplica, "Replica shall lag behind.");
+		assertFalse(reloaded.isAccountNonLocked(), "Reloaded user shall be banned.");
+	}
+
+	private void startRequest(Cookie... cookies) {
+		request = new MockHttpServletRequest();
+		request.setCookies(cookies);
+		response = new MockHttpServletResponse();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+	}
+
+	private void createUserTable(DataSource dataSource, boolean banned) {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table fsqr_user (login_name varchar(255), banned boolean)");
+		jdbcTemplate.update("insert into fsqr_user values ('known', ?)", banned);
+	}
+
+	private TransactionTemplate createTransaction(Duration maxLag, boolean readOnly) {
+		DataSource dataSource = new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(primary, replica, maxLag));
+		TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		transaction.setReadOnly(readOnly);
+		return transaction;
+	}
+
+	private String queryDatabase(TransactionTemplate transaction) {
+		return transaction.execute(status -> new JdbcTemplate(
+				((DataSourceTransactionManager) transaction.getTransactionManager()).getDataSource())
+				.queryForObject(QUERY_DATABASE, String.class));
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link TimeOrderedUuids}.
+ * 
+ * @author Robert Breunung
+ */
+public class TimeOrderedUuidsTest {
+
+	@Test
+	public void next_version7Layout() {
+		UUID uuid = TimeOrderedUuids.next();
+
+		assertEquals(7, uuid.version(), "Version 7 expected.");
+		assertEquals(2, uuid.variant(), "RFC variant expected.");
+	}
+
+	@Test
+	public void create_sameMillisecond_ascending() {
+		// own generator state, the shared one must not run ahead of the clock
+		AtomicLong last = new AtomicLong();
+		long millis = System.currentTimeMillis();
+
+		UUID first = TimeOrderedUuids.create(last, millis, -1L);
+		UUID second = TimeOrderedUuids.create(last, millis, 0L);
+
+		assertTrue(first.compareTo(second) < 0, "Ids of the same millisecond shall ascend.");
+		assertEquals(millis, TimeOrderedUuids.getMillis(first), "Creation time expected.");
+	}
+
+	@Test
+	public void next_consecutiveIds_ascending() {
+		UUID previous = TimeOrderedUuids.next();
+		for (int i = 0; i < 10_000; i++) {
+			UUID next = TimeOrderedUuids.next();
+			assertTrue(previous.compareTo(next) < 0, "Ids shall ascend.");
+			previous = next;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.model.backend;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Insert throughput of random UUIDs against {@link TimeOrderedUuids} on an H2
+ * file database like the one configured in <code>application.properties</code>.
+ * The benchmark uses its own database file and runs only with
+ * <code>-Dfsqr.benchmark=true</code>.
+ * 
+ * @author Robert Breunung
+ */
+@EnabledIfSystemProperty(named = "fsqr.benchmark", matches = "true")
+@Slf4j
+public class UuidInsertBenchmarkTest {
+
+	private static final int BATCH_SIZE = 500;
+	private static final int ROWS = Integer.getInteger("fsqr.benchmark.rows", 500_000);
+
+	@TempDir
+	private Path directory;
+
+	@Test
+	public void insert_randomAgainstTimeOrdered() throws SQLException {
+		try (Connection connection = DriverManager.getConnection("jdbc:h2:file:" + directory.resolve("uuid-insert"),
+				"sa", "")) {
+			connection.setAutoCommit(false);
+			// warm up both code paths
+			insert(connection, "warmupRandom", UUID::randomUUID, ROWS / 10);
+			insert(connection, "warmupOrdered", TimeOrderedUuids::next, ROWS / 10);
+
+			long random = insert(connection, "randomUuid", UUID::randomUUID, ROWS);
+			long ordered = insert(connection, "orderedUuid", TimeOrderedUuids::next, ROWS);
+
+			log.info("Inserted {} rows: random UUID {} rows/s, time ordered UUID {} rows/s.", ROWS,
+					ROWS * 1_000_000_000L / random, ROWS * 1_000_000_000L / ordered);
+		}
+	}
+
+	/**
+	 * @return The duration in nanoseconds.
+	 */
+	private long insert(Connection connection, String table, Supplier<UUID> ids, int rows) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table " + table + " (uuid uuid primary key, loginName varchar(255))");
+		}
+		connection.commit();
+
+		long start = System.nanoTime();
+		try (PreparedStatement insert = connection
+				.prepareStatement("insert into " + table + " (uuid, loginName) values (?, ?)")) {
+			for (int i = 1; i <= rows; i++) {
+				insert.setObject(1, ids.get());
+				insert.setString(2, "user" + i);
+				insert.addBatch();
+				if (i % BATCH_SIZE == 0) {
+					insert.executeBatch();
+					connection.commit();
+				}
+			}
+			insert.executeBatch();
+			connection.commit();
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -23,10 +23,13 @@
  */
 package de.futuresqr.server.rest;
 
+import static de.futuresqr.server.model.frontend.UserProperties.DISPLAY_NAME;
 import static de.futuresqr.server.model.frontend.UserProperties.EMAIL;
 import static de.futuresqr.server.model.frontend.UserProperties.LOGIN_NAME;
 import static de.futuresqr.server.model.frontend.UserProperties.PASSWORD;
 import static de.futuresqr.server.service.FsqrUserDetailsManager.ROLE_ADMIN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
@@ -34,16 +37,30 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.notNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
 import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -54,24 +71,37 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Slice;
 import org.springframework.mock.web.MockPart;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.request.WebRequest;
 
+import de.futuresqr.server.SecurityConfiguration;
 import de.futuresqr.server.model.backend.PersistenceUser;
 import de.futuresqr.server.model.frontend.UserProperties;
 import de.futuresqr.server.rest.user.UserManagementController;
 import de.futuresqr.server.restdata.UserRepository;
+import de.futuresqr.server.service.SimpleUserListSnapshot;
+import de.futuresqr.server.service.SimpleUserLookup;
+import de.futuresqr.server.service.UserBatchService;
+import de.futuresqr.server.service.UserDirectoryVersion;
+import de.futuresqr.server.service.UserImportService;
+import de.futuresqr.server.service.UserListWriter;
+import de.futuresqr.server.service.UserSearchIndex;
+import de.futuresqr.server.service.VcsAuthorResolver;
 
 /**
  * Unit tests for {@link UserManagementController}.
  * 
  * @author Robert Breunung
  */
-@WebMvcTest(UserManagementController.class)
+@WebMvcTest(controllers = UserManagementController.class, properties = "fsqr.user.lookup.max-ids=2")
 public class UserManagementControllerTest {
 
 	@TestConfiguration
@@ -81,13 +111,30 @@ public class UserManagementControllerTest {
 		PasswordEncoder passwordEncoder() {
 			return new BCryptPasswordEncoder();
 		}
+
+		/**
+		 * The authorization rules of the application, without its login.
+		 */
+		@Bean
+		SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+			http.authorizeHttpRequests().anyRequest().access(SecurityConfiguration.authorizationRules(""));
+			return http.build();
+		}
 	}
 
 	private static final String LOGIN_NAME_ADD = "alter";
 
 	private static final String PATH_REST_USER_ADD = "/rest/user/add";
 	private static final String PATH_REST_USER_BAN = "/rest/user/ban";
+	private static final String PATH_REST_USER_BATCH_BAN = "/rest/user/batch/ban";
+	private static final String PATH_REST_USER_BATCH_EDIT = "/rest/user/batch/edit";
+	private static final String PATH_REST_USER_BATCH_UNBAN = "/rest/user/batch/unban";
+	private static final String PATH_REST_USER_BY_IDS = "/rest/user/byIds";
+	private static final String PATH_REST_USER_IMPORT = "/rest/user/import";
+	private static final String PATH_REST_USER_SIMPLE_LIST = "/rest/user/simpleList";
+	private static final String PATH_REST_USER_UPDATE_DISPLAY_NAME = "/rest/user/updateDisplayName";
 	private static final String PATH_REST_USER_UNBAN = "/rest/user/unban";
+	private static final String PATH_REST_USER_VCS_AUTHORS = "/rest/user/vcsAuthors";
 
 	private static final UUID USER_KNOWN_ID = UUID.randomUUID();
 	private static final UUID USER_UNKNOWN_ID = UUID.randomUUID();
@@ -97,9 +144,33 @@ public class UserManagementControllerTest {
 	@Autowired
 	private MockMvc mvc;
 
+	@MockBean
+	private SimpleUserListSnapshot simpleUserListSnapshot;
+
+	@MockBean
+	private SimpleUserLookup simpleUserLookup;
+
+	@MockBean
+	private UserBatchService userBatchService;
+
+	@MockBean
+	private UserDirectoryVersion userDirectoryVersion;
+
+	@MockBean
+	private UserImportService userImportService;
+
+	@MockBean
+	private UserListWriter userListWriter;
+
 	@MockBean
 	private UserRepository userRepository;
 
+	@MockBean
+	private UserSearchIndex userSearchIndex;
+
+	@MockBean
+	private VcsAuthorResolver vcsAuthorResolver;
+
 	@SuppressWarnings("unchecked")
 	@BeforeEach
 	public void setup() {
@@ -205,6 +276,225 @@ public class UserManagementControllerTest {
 				.andExpect(status().isNotFound());
 	}
 
+	@Test
+	@WithMockUser(username = "admin", password = "admin", roles = ROLE_ADMIN)
+	public void testRestBanUser_ifMatchOtherVersion_returnStatusPreconditionFailed() throws Exception {
+		knownUser.setVersion(3);
+
+		URI uri = URI.create(PATH_REST_USER_BAN);
+		mvc.perform(multipart(POST, uri).part(createUuidPart(USER_KNOWN_ID)).header(IF_MATCH, "\"2\"").with(csrf()))
+				// assert
+				.andExpect(status().isPreconditionFailed());
+		assertFalse(knownUser.isBanned());
+	}
+
+	@Test
+	@WithMockUser(username = "admin", password = "admin", roles = ROLE_ADMIN)
+	public void testRestBanUser_concurrentChange_returnStatusPreconditionFailed() throws Exception {
+		when(userRepository.save(any())).thenThrow(new OptimisticLockingFailureException("Concurrent change."));
+
+		URI uri = URI.create(PATH_REST_USER_BAN);
+		mvc.perform(multipart(POST, uri).part(createUuidPart(USER_KNOWN_ID)).with(csrf()))
+				// assert
+				.andExpect(status().isPreconditionFailed());
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestUpdateDisplayName_ifMatchCurrentVersion_returnStatusOkWithNewVersion() throws Exception {
+		knownUser.setVersion(3);
+		when(userRepository.findById(USER_KNOWN_ID)).thenReturn(Optional.of(knownUser));
+		when(userRepository.save(knownUser)).then(invocation -> {
+			knownUser.setVersion(4);
+			return knownUser;
+		});
+
+		mvc.perform(post(PATH_REST_USER_UPDATE_DISPLAY_NAME).param(UserProperties.UUID, USER_KNOWN_ID.toString())
+				.param(DISPLAY_NAME, "Renamed").header(IF_MATCH, "\"3\"").with(csrf()))
+				// assert
+				.andExpect(status().isOk()).andExpect(header().string(ETAG, "\"4\""));
+		assertEquals("Renamed", knownUser.getDisplayName(), "Display name changed.");
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestUpdateDisplayName_ifMatchOtherVersion_returnStatusPreconditionFailed() throws Exception {
+		knownUser.setVersion(3);
+		when(userRepository.findById(USER_KNOWN_ID)).thenReturn(Optional.of(knownUser));
+
+		mvc.perform(post(PATH_REST_USER_UPDATE_DISPLAY_NAME).param(UserProperties.UUID, USER_KNOWN_ID.toString())
+				.param(DISPLAY_NAME, "Renamed").header(IF_MATCH, "\"2\"").with(csrf()))
+				// assert
+				.andExpect(status().isPreconditionFailed());
+		verify(userRepository, never()).save(any());
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestUpdateDisplayName_concurrentChange_returnStatusPreconditionFailed() throws Exception {
+		when(userRepository.findById(USER_KNOWN_ID)).thenReturn(Optional.of(knownUser));
+		when(userRepository.save(knownUser)).thenThrow(new OptimisticLockingFailureException("Stale user."));
+
+		mvc.perform(post(PATH_REST_USER_UPDATE_DISPLAY_NAME).param(UserProperties.UUID, USER_KNOWN_ID.toString())
+				.param(DISPLAY_NAME, "Renamed").with(csrf()))
+				// assert
+				.andExpect(status().isPreconditionFailed());
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestUpdateDisplayName_noIfMatch_updatedUnconditionally() throws Exception {
+		when(userRepository.findById(USER_KNOWN_ID)).thenReturn(Optional.of(knownUser));
+
+		mvc.perform(post(PATH_REST_USER_UPDATE_DISPLAY_NAME).param(UserProperties.UUID, USER_KNOWN_ID.toString())
+				.param(DISPLAY_NAME, "Renamed").with(csrf()))
+				// assert
+				.andExpect(status().isOk());
+		verify(userRepository).save(knownUser);
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestSimpleList_ifNoneMatchCurrentVersion_returnStatusNotModified() throws Exception {
+		when(userDirectoryVersion.checkNotModified(any(WebRequest.class)))
+				.then(invocation -> invocation.<WebRequest>getArgument(0).checkNotModified("\"1\""));
+
+		mvc.perform(get(PATH_REST_USER_SIMPLE_LIST).header(IF_NONE_MATCH, "\"1\""))
+				// assert
+				.andExpect(status().isNotModified()).andExpect(content().bytes(new byte[0]));
+		verifyNoInteractions(simpleUserListSnapshot, userListWriter);
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestSimpleList_acceptGzip_compressedSnapshot() throws Exception {
+		byte[] gzip = "compressed".getBytes(UTF_8);
+		SimpleUserListSnapshot.Content snapshot = mock(SimpleUserListSnapshot.Content.class);
+		when(snapshot.getGzip()).thenReturn(gzip);
+		when(simpleUserListSnapshot.getCurrent()).thenReturn(snapshot);
+
+		mvc.perform(get(PATH_REST_USER_SIMPLE_LIST).header(ACCEPT_ENCODING, "gzip, deflate"))
+				// assert
+				.andExpect(status().isOk()).andExpect(header().string(CONTENT_ENCODING, "gzip"))
+				.andExpect(content().bytes(gzip));
+		verifyNoInteractions(userListWriter);
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestSimpleList_gzipNotAcceptable_identitySnapshot() throws Exception {
+		byte[] identity = "plain".getBytes(UTF_8);
+		SimpleUserListSnapshot.Content snapshot = mock(SimpleUserListSnapshot.Content.class);
+		when(snapshot.getIdentity()).thenReturn(identity);
+		when(simpleUserListSnapshot.getCurrent()).thenReturn(snapshot);
+
+		mvc.perform(get(PATH_REST_USER_SIMPLE_LIST).header(ACCEPT_ENCODING, "gzip;q=0, identity"))
+				// assert
+				.andExpect(status().isOk()).andExpect(header().doesNotExist(CONTENT_ENCODING))
+				.andExpect(content().bytes(identity));
+		verify(userDirectoryVersion).checkNotModified(any(WebRequest.class));
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestSimpleList_acceptGzip_gzipEntityTag() throws Exception {
+		SimpleUserListSnapshot.Content snapshot = mock(SimpleUserListSnapshot.Content.class);
+		when(snapshot.getGzip()).thenReturn(new byte[0]);
+		when(simpleUserListSnapshot.getCurrent()).thenReturn(snapshot);
+
+		mvc.perform(get(PATH_REST_USER_SIMPLE_LIST).header(ACCEPT_ENCODING, "br, GZIP;q=0.5"));
+
+		verify(userDirectoryVersion).checkNotModifiedEncoded(any(WebRequest.class), eq("gzip"));
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestByIds_maximumIds_returnStatusOk() throws Exception {
+		String body = "[\"" + USER_KNOWN_ID + "\",\"" + USER_UNKNOWN_ID + "\"]";
+
+		mvc.perform(post(PATH_REST_USER_BY_IDS).with(csrf()).contentType(APPLICATION_JSON).content(body))
+				// assert
+				.andExpect(status().isOk());
+		verify(simpleUserLookup).findListByIds(List.of(USER_KNOWN_ID, USER_UNKNOWN_ID));
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestByIds_tooManyIds_returnStatusBadRequest() throws Exception {
+		String body = "[\"" + USER_KNOWN_ID + "\",\"" + USER_UNKNOWN_ID + "\",\"" + UUID.randomUUID() + "\"]";
+
+		mvc.perform(post(PATH_REST_USER_BY_IDS).with(csrf()).contentType(APPLICATION_JSON).content(body))
+				// assert
+				.andExpect(status().isBadRequest());
+		verifyNoInteractions(simpleUserLookup);
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestVcsAuthors_tooManyAuthors_returnStatusBadRequest() throws Exception {
+		mvc.perform(post(PATH_REST_USER_VCS_AUTHORS).with(csrf()).contentType(APPLICATION_JSON)
+				.content("[\"jdoe\",\"jane\",\"bob\"]"))
+				// assert
+				.andExpect(status().isBadRequest());
+		verifyNoInteractions(vcsAuthorResolver);
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestBatchBan_plainUser_returnStatusForbidden() throws Exception {
+		mvc.perform(post(PATH_REST_USER_BATCH_BAN).with(csrf()).contentType(APPLICATION_JSON)
+				.content("[\"" + USER_KNOWN_ID + "\"]")).andExpect(status().isForbidden());
+		verifyNoInteractions(userBatchService);
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestBatchEdit_plainUser_returnStatusForbidden() throws Exception {
+		mvc.perform(post(PATH_REST_USER_BATCH_EDIT).with(csrf()).contentType(APPLICATION_JSON).content("[]"))
+				.andExpect(status().isForbidden());
+		verifyNoInteractions(userBatchService);
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestBatchUnban_plainUser_returnStatusForbidden() throws Exception {
+		mvc.perform(post(PATH_REST_USER_BATCH_UNBAN).with(csrf()).contentType(APPLICATION_JSON)
+				.content("[\"" + USER_KNOWN_ID + "\"]")).andExpect(status().isForbidden());
+		verifyNoInteractions(userBatchService);
+	}
+
+	@Test
+	@WithMockUser(username = "admin", password = "admin", roles = ROLE_ADMIN)
+	public void testRestBatchBan_admin_returnStatusOk() throws Exception {
+		mvc.perform(post(PATH_REST_USER_BATCH_BAN).with(csrf()).contentType(APPLICATION_JSON)
+				.content("[\"" + USER_KNOWN_ID + "\"]")).andExpect(status().isOk());
+		verify(userBatchService).ban(List.of(USER_KNOWN_ID));
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestBanUser_plainUser_returnStatusForbidden() throws Exception {
+		mvc.perform(multipart(POST, URI.create(PATH_REST_USER_BAN)).part(createUuidPart(USER_KNOWN_ID)).with(csrf()))
+				.andExpect(status().isForbidden());
+		verify(userRepository, never()).save(any());
+	}
+
+	@Test
+	@WithMockUser
+	public void testRestImport_plainUser_returnStatusForbidden() throws Exception {
+		mvc.perform(post(PATH_REST_USER_IMPORT).with(csrf()).contentType(UserImportService.MEDIA_TYPE_CSV)
+				.content("loginname,password\nintruder,secret\n")).andExpect(status().isForbidden());
+		verifyNoInteractions(userImportService);
+	}
+
+	@Test
+	@WithMockUser(username = "admin", password = "admin", roles = ROLE_ADMIN)
+	public void testRestImport_admin_importStarted() throws Exception {
+		mvc.perform(post(PATH_REST_USER_IMPORT).with(csrf()).contentType(UserImportService.MEDIA_TYPE_CSV)
+				.content("loginname,password\nnew,secret\n")).andExpect(status().isOk());
+		verify(userImportService).importUsers(notNull(), eq(UserImportService.Format.CSV), notNull());
+	}
+
 	private MockPart createPart(String name, String content) {
 		return new MockPart(name, content.getBytes());
 	}
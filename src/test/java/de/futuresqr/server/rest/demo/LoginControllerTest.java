@@ -141,14 +141,36 @@ public class LoginControllerTest {
 		HttpHeaders header = getHeader(csrfData, anonymousSession);
 		ResponseEntity<String> loginPost = webclient.postForEntity(loginUri, new HttpEntity<>(header), String.class);
 
-		String sessionCookie = getNewSetCookieContent(loginPost);
-		header = getHeader(csrfResponse.getBody(), sessionCookie, anonymousSession);
+		// the login answers the session cookie and the CSRF token of the new session
+		csrfData.setToken(loginPost.getHeaders().getFirst(csrfData.getHeaderName()));
+		header = getHeader(csrfData, loginPost.getHeaders().get(SET_COOKIE).toArray(String[]::new));
 		ResponseEntity<String> response = webclient.exchange(getPostTestMessageUri(null, MESSAGE), POST,
 				new HttpEntity<>(header), String.class);
 
 		assertTrue(response.getBody().equals(MESSAGE), "Controller shall respond with same message.");
 	}
 
+	@Test
+	public void postTest_authenticatedWithCsrfTokenBeforeLogin_statusForbidden() {
+
+		final String getCsfrUri = "http://localhost:" + serverPort + REST_PATH_CSRF;
+		ResponseEntity<CsrfDto> csrfResponse = webclient.getForEntity(getCsfrUri, CsrfDto.class);
+
+		CsrfDto csrfData = csrfResponse.getBody();
+		final String anonymousSession = getNewSetCookieContent(csrfResponse);
+		HttpHeaders header = getHeader(csrfData, anonymousSession);
+		ResponseEntity<String> loginPost = webclient.postForEntity(getLoginUri(null), new HttpEntity<>(header),
+				String.class);
+
+		String sessionCookie = loginPost.getHeaders().get(SET_COOKIE).stream()
+				.filter(cookie -> !cookie.startsWith("XSRF-TOKEN")).findAny().get();
+		header = getHeader(csrfData, sessionCookie, anonymousSession);
+		ResponseEntity<String> response = webclient.exchange(getPostTestMessageUri(null, MESSAGE), POST,
+				new HttpEntity<>(header), String.class);
+
+		assertEquals(403, response.getStatusCode().value(), "CSRF token is bound to the anonymous user.");
+	}
+
 	private HttpHeaders getHeader(CsrfDto csrfData, String... cookies) {
 		HttpHeaders header = new HttpHeaders();
 		header.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE);
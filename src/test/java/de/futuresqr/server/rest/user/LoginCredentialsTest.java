@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.rest.user;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartHttpServletRequest;
+import org.springframework.mock.web.MockPart;
+
+/**
+ * Unit tests for {@link LoginCredentials}.
+ *
+ * @author Robert Breunung
+ */
+public class LoginCredentialsTest {
+
+	@Test
+	public void of_jsonBody_credentialsParsed() {
+		MockHttpServletRequest request = createJsonRequest(
+				"{\"username\":\"jürgen\",\"remember\":{\"me\":true},\"password\":\"s3cret\"}");
+
+		LoginCredentials credentials = LoginCredentials.of(request);
+
+		assertEquals("jürgen", credentials.getLoginName());
+		assertEquals("s3cret", credentials.getPassword());
+	}
+
+	@Test
+	public void of_jsonBodyOverLimit_empty() {
+		String padding = "x".repeat(LoginCredentials.MAX_BODY_SIZE);
+		MockHttpServletRequest request = createJsonRequest(
+				"{\"loginname\":\"admin\",\"password\":\"admin\",\"padding\":\"" + padding + "\"}");
+
+		assertNull(LoginCredentials.of(request).getLoginName());
+	}
+
+	@Test
+	public void of_urlEncodedParameters_credentialsRead() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/rest/login");
+		request.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+		request.addParameter("loginname", "admin");
+		request.addParameter("password", "admin");
+
+		assertEquals("admin", LoginCredentials.of(request).getLoginName());
+	}
+
+	@Test
+	public void of_multipartFallback_credentialsRead() {
+		MockMultipartHttpServletRequest request = new MockMultipartHttpServletRequest();
+		request.setMethod("POST");
+		request.addPart(new MockPart("username", "admin".getBytes(UTF_8)));
+		request.addPart(new MockPart("password", "admin".getBytes(UTF_8)));
+
+		assertEquals("admin", LoginCredentials.of(request).getPassword());
+	}
+
+	@Test
+	public void of_calledTwice_parsedOnce() {
+		MockHttpServletRequest request = createJsonRequest("{\"username\":\"admin\"}");
+
+		assertSame(LoginCredentials.of(request), LoginCredentials.of(request));
+	}
+
+	private static MockHttpServletRequest createJsonRequest(String body) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/rest/user/authenticate");
+		request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		request.setContent(body.getBytes(UTF_8));
+		return request;
+	}
+}
@@ -25,6 +25,7 @@ package de.futuresqr.server.rest.user;
 
 import static de.futuresqr.server.SecurityConfiguration.PATH_REST_USER_AUTHENTICATE;
 import static de.futuresqr.server.model.frontend.UserProperties.PASSWORD;
+import static de.futuresqr.server.session.JdbcSecurityContextRepository.DEFAULT_COOKIE_NAME;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.http.HttpHeaders.COOKIE;
@@ -99,6 +100,20 @@ public class LoginTest {
 		assertEquals(403, postResponse.getStatusCode().value(), "Access shall be forbidden with missing session.");
 	}
 
+	@Test
+	public void getUndeclaredPath_anonymous_statusForbidden() {
+		ResponseEntity<String> response = webclient.getForEntity("/undeclared/path", String.class);
+
+		assertEquals(403, response.getStatusCode().value(), "Paths without a rule shall be denied.");
+	}
+
+	@Test
+	public void getIndex_anonymous_statusOk() {
+		ResponseEntity<String> response = webclient.getForEntity("/index.html", String.class);
+
+		assertTrue(response.getStatusCode().is2xxSuccessful(), "The static frontend shall be public.");
+	}
+
 	@SuppressWarnings("null")
 	@Test
 	public void postLogin_validRequestFormCsrfToken_authenticationRedirection() {
@@ -238,7 +253,7 @@ public class LoginTest {
 
 		ResponseEntity<String> postResponse = webclient.postForEntity(uri, new HttpEntity<>(body, header),
 				String.class);
-		sessionId = postResponse.getHeaders().get(SET_COOKIE).stream().filter(s -> s.startsWith("J")).findAny().get();
+		sessionId = postResponse.getHeaders().get(SET_COOKIE).stream().filter(s -> s.startsWith(DEFAULT_COOKIE_NAME)).findAny().get();
 		final String randomMessage = UUID.randomUUID().toString();
 		uri = getPostTestMessageUri(null, randomMessage);
 		header = getJsonHeader(null, sessionId);
@@ -403,7 +418,7 @@ public class LoginTest {
 		for (String newCookie : newCookies) {
 			String[] cookieSplit = newCookie.split(";");
 			String[] cookieBody = cookieSplit[0].split("=");
-			if (cookieSplit[0].startsWith("JS")) {
+			if (cookieSplit[0].startsWith(DEFAULT_COOKIE_NAME)) {
 				sessionCookie = newCookie;
 			} else if (cookieBody.length == 2 && cookieBody[1] != null && !cookieBody[1].isBlank()) {
 				if (updateCsfrToken) {
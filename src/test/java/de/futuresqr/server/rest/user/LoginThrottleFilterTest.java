@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.rest.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import de.futuresqr.server.service.LoginThrottle;
+
+/**
+ * Unit tests for {@link LoginThrottleFilter}.
+ *
+ * @author Robert Breunung
+ */
+@ExtendWith(MockitoExtension.class)
+public class LoginThrottleFilterTest {
+
+	@Mock
+	private LoginThrottle loginThrottle;
+
+	private LoginThrottleFilter filter;
+
+	private MockHttpServletRequest request;
+
+	private MockHttpServletResponse response;
+
+	@BeforeEach
+	public void setup() {
+		filter = new LoginThrottleFilter(loginThrottle, new AntPathRequestMatcher("/rest/login", "POST"));
+		request = new MockHttpServletRequest("POST", "/rest/login");
+		request.setServletPath("/rest/login");
+		request.setContentType(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+		request.addParameter("loginname", "admin");
+		response = new MockHttpServletResponse();
+	}
+
+	@Test
+	public void doFilter_fractionalRetryAfter_roundedUp() throws Exception {
+		when(loginThrottle.tryAcquire(request.getRemoteAddr(), "admin")).thenReturn(Duration.ofMillis(2001));
+
+		filter.doFilter(request, response, new MockFilterChain());
+
+		assertEquals(429, response.getStatus());
+		assertEquals("3", response.getHeader(RETRY_AFTER));
+	}
+
+	@Test
+	public void doFilter_retryAfterBelowOneSecond_oneSecond() throws Exception {
+		when(loginThrottle.tryAcquire(request.getRemoteAddr(), "admin")).thenReturn(Duration.ofMillis(1));
+
+		filter.doFilter(request, response, new MockFilterChain());
+
+		assertEquals("1", response.getHeader(RETRY_AFTER));
+	}
+
+	@Test
+	public void doFilter_notThrottled_passedOn() throws Exception {
+		MockFilterChain chain = new MockFilterChain();
+
+		filter.doFilter(request, response, chain);
+
+		assertEquals(request, chain.getRequest());
+		assertNull(response.getHeader(RETRY_AFTER));
+	}
+}
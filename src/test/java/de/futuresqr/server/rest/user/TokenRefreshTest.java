@@ -0,0 +1,111 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.rest.user;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import de.futuresqr.server.restdata.UserRepository;
+import de.futuresqr.server.session.HmacCsrfTokenRepository;
+import de.futuresqr.server.session.TokenRevocationSet;
+import de.futuresqr.server.session.TokenSecurityContextRepository;
+import jakarta.servlet.http.Cookie;
+
+/**
+ * Tests the refresh of revoked tokens in the stateless authentication mode,
+ * which includes the CSRF protection of the following requests.
+ * 
+ * @author Robert Breunung
+ */
+@SpringBootTest(properties = "fsqr.session.store=token")
+@AutoConfigureMockMvc
+public class TokenRefreshTest {
+
+	private static final String PATH_REST_TEST_POST = "/rest/test/post";
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private TokenRevocationSet revocationSet;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	public void postRefresh_revokedAccessToken_followingPostAccepted() throws Exception {
+		MockHttpServletResponse login = mvc.perform(post("/rest/user/authenticate").param("username", "user")
+				.param("password", "password").with(csrf())).andExpect(status().isOk()).andReturn().getResponse();
+		Cookie accessToken = getCookie(login, TokenSecurityContextRepository.ACCESS_COOKIE_NAME);
+		Cookie refreshToken = getCookie(login, TokenSecurityContextRepository.REFRESH_COOKIE_NAME);
+		String csrfToken = login.getHeader(HmacCsrfTokenRepository.HEADER_NAME);
+		postMessage(accessToken, csrfToken).andExpect(status().isOk());
+
+		// e.g. by a profile change, which requires a refresh
+		UUID uuid = userRepository.findByLoginName("user").getContent().get(0).getUuid();
+		Thread.sleep(2);
+		revocationSet.revoke(uuid);
+		postMessage(accessToken, csrfToken).andExpect(status().isForbidden());
+
+		MockHttpServletResponse refresh = mvc.perform(post(TokenSecurityContextRepository.REFRESH_PATH)
+				.cookie(refreshToken)).andExpect(status().isOk()).andReturn().getResponse();
+		Cookie refreshedAccessToken = getCookie(refresh, TokenSecurityContextRepository.ACCESS_COOKIE_NAME);
+		String refreshedCsrfToken = refresh.getHeader(HmacCsrfTokenRepository.HEADER_NAME);
+		assertNotNull(refreshedCsrfToken, "Refresh answers a CSRF token.");
+
+		postMessage(refreshedAccessToken, refreshedCsrfToken).andExpect(status().isOk())
+				.andExpect(content().string("refreshed"));
+	}
+
+	@Test
+	public void postRefresh_noRefreshToken_statusUnauthorized() throws Exception {
+		mvc.perform(post(TokenSecurityContextRepository.REFRESH_PATH)).andExpect(status().isUnauthorized());
+	}
+
+	private ResultActions postMessage(Cookie accessToken, String csrfToken)
+			throws Exception {
+		return mvc.perform(post(PATH_REST_TEST_POST).param("message", "refreshed").cookie(accessToken,
+				new Cookie(HmacCsrfTokenRepository.COOKIE_NAME, csrfToken))
+				.header(HmacCsrfTokenRepository.HEADER_NAME, csrfToken));
+	}
+
+	private static Cookie getCookie(MockHttpServletResponse response, String name) {
+		Cookie cookie = response.getCookie(name);
+		assertNotNull(cookie, () -> name + " expected.");
+		return cookie;
+	}
+}
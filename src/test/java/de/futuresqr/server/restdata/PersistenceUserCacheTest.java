@@ -0,0 +1,116 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.restdata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.futuresqr.server.model.backend.PersistenceUser;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Tests the user entity in the second level cache configured like the
+ * application. The test properties replace the ones of the application, so
+ * the cache is enabled here. A cache region without configuration fails the
+ * startup.
+ * 
+ * @author Robert Breunung
+ */
+@DataJpaTest(properties = { "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+		"spring.jpa.properties.hibernate.cache.use_query_cache=true",
+		"spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+		"spring.jpa.properties.hibernate.javax.cache.provider="
+				+ "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+		"spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=fail" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PersistenceUserCacheTest {
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private Cache cache;
+
+	private PersistenceUser first;
+	private PersistenceUser second;
+
+	@BeforeEach
+	public void setup() {
+		cache = entityManagerFactory.getCache();
+		first = userRepository.save(PersistenceUser.builder().loginName("first").displayName("First").build());
+		second = userRepository.save(PersistenceUser.builder().loginName("second").displayName("Second").build());
+		cache.evictAll();
+		userRepository.findById(first.getUuid());
+		userRepository.findById(second.getUuid());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		userRepository.deleteAll();
+		cache.evictAll();
+	}
+
+	@Test
+	public void findById_loadedUser_cached() {
+		assertTrue(cache.contains(PersistenceUser.class, first.getUuid()), "First user cached.");
+		assertTrue(cache.contains(PersistenceUser.class, second.getUuid()), "Second user cached.");
+	}
+
+	@Test
+	public void save_changedUser_otherUserStaysCached() {
+		PersistenceUser user = userRepository.findById(first.getUuid()).orElseThrow();
+		user.setDisplayName("Renamed");
+
+		long version = userRepository.save(user).getVersion();
+
+		assertTrue(cache.contains(PersistenceUser.class, second.getUuid()), "Other user stays cached.");
+		PersistenceUser reloadedUser = userRepository.findById(first.getUuid()).orElseThrow();
+		assertEquals("Renamed", reloadedUser.getDisplayName(), "Cached user updated.");
+		assertEquals(version, reloadedUser.getVersion(), "Version of the update cached.");
+	}
+
+	@Test
+	public void banAll_singleUser_regionEvicted() {
+		userRepository.banAll(List.of(first.getUuid()), Instant.now());
+
+		// the trade-off of the bulk update, see UserRepository.banAll
+		assertFalse(cache.contains(PersistenceUser.class, second.getUuid()), "Region evicted.");
+		assertTrue(userRepository.findById(first.getUuid()).orElseThrow().isBanned(), "Ban read.");
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.restdata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserProjection;
+import de.futuresqr.server.model.backend.UserRole;
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+import de.futuresqr.server.model.frontend.UserListCursor;
+
+/**
+ * Tests for the custom queries of {@link UserRepository}.
+ * 
+ * @author Robert Breunung
+ */
+@DataJpaTest
+public class UserRepositoryTest {
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private PersistenceUser user;
+
+	@BeforeEach
+	public void setup() {
+		user = userRepository.save(PersistenceUser.builder().loginName("stream").displayName("Stream User")
+				.email("stream@mindscan.local").roles(UserRole.toMask(UserRole.USER)).build());
+	}
+
+	@Test
+	public void banAll_knownUser_bannedWithDate() {
+		// database precision
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+		int updated = userRepository.banAll(List.of(user.getUuid()), now);
+		PersistenceUser bannedUser = userRepository.findById(user.getUuid()).orElseThrow();
+
+		assertEquals(1, updated, "One user updated.");
+		assertTrue(bannedUser.isBanned(), "User banned.");
+		assertEquals(now, bannedUser.getBannedDate(), "Ban date set.");
+	}
+
+	@Test
+	public void unbanAll_bannedUser_banDateRemoved() {
+		userRepository.banAll(List.of(user.getUuid()), Instant.now());
+
+		userRepository.unbanAll(List.of(user.getUuid()), Instant.now());
+		PersistenceUser unbannedUser = userRepository.findById(user.getUuid()).orElseThrow();
+
+		assertFalse(unbannedUser.isBanned(), "User not banned.");
+		assertNull(unbannedUser.getBannedDate(), "Ban date removed.");
+	}
+
+	@Test
+	public void findByRole_adminAndUser_onlyAdminReturned() {
+		PersistenceUser admin = userRepository.save(PersistenceUser.builder().loginName("root")
+				.roles(UserRole.toMask(UserRole.USER, UserRole.ADMIN)).build());
+
+		List<PersistenceUser> admins = userRepository.findByRole(UserRole.ADMIN);
+
+		assertEquals(List.of(admin.getUuid()), admins.stream().map(PersistenceUser::getUuid).toList());
+	}
+
+	@Test
+	public void findSimpleUsersAfter_cursorOfPreviousPage_followingUsersReturned() {
+		userRepository.save(PersistenceUser.builder().loginName("anna").displayName("Anna").build());
+		userRepository.save(PersistenceUser.builder().loginName("bert").displayName("Bert").build());
+		UserListCursor first = UserListCursor.FIRST;
+
+		List<SimpleUserDto> firstPage = userRepository.findSimpleUsersAfter(first.getDisplayName(), first.getUuid(),
+				PageRequest.ofSize(2));
+		SimpleUserDto last = firstPage.get(1);
+		UserListCursor next = UserListCursor.fromToken(new UserListCursor(last.getDisplayname(), last.getUuid()).toToken());
+		List<SimpleUserDto> secondPage = userRepository.findSimpleUsersAfter(next.getDisplayName(), next.getUuid(),
+				PageRequest.ofSize(2));
+
+		assertEquals(List.of("Anna", "Bert"), firstPage.stream().map(SimpleUserDto::getDisplayname).toList(),
+				"First page ordered by display name.");
+		assertEquals(List.of("Stream User"), secondPage.stream().map(SimpleUserDto::getDisplayname).toList(),
+				"Second page continues after the cursor.");
+	}
+
+	@Test
+	public void streamSimpleUsers_savedUser_dtoReturned() {
+		List<SimpleUserDto> users;
+		try (Stream<SimpleUserDto> stream = userRepository.streamSimpleUsers()) {
+			users = stream.toList();
+		}
+
+		assertEquals(1, users.size(), "One user expected.");
+		assertEquals(new SimpleUserDto(user.getUuid(), "Stream User", null), users.get(0), "Projection expected.");
+	}
+
+	@Test
+	public void streamUserProjections_savedUser_projectionReturned() {
+		List<UserProjection> users;
+		try (Stream<UserProjection> stream = userRepository.streamUserProjections()) {
+			users = stream.toList();
+		}
+
+		assertEquals(1, users.size(), "One user expected.");
+		assertEquals("stream", users.get(0).getLoginName(), "Login name expected.");
+		assertTrue(users.get(0).getGrantedAuthorities().contains("ROLE_USER"), "Authorities expected.");
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.security;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import de.futuresqr.server.model.backend.UserRole;
+
+/**
+ * JMH benchmark of the authorization time of the
+ * {@link PathTrieAuthorizationManager} against the sequential
+ * <code>antMatchers</code> of the former filter chain, while the number of
+ * review end points grows. One operation checks all sample requests. The
+ * benchmark runs only with <code>-Dfsqr.benchmark=true</code>.
+ * 
+ * @author Robert Breunung
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathTrieAuthorizationBenchmarkTest {
+
+	private static final AuthorizationManager<RequestAuthorizationContext> PERMIT_ALL = (authentication,
+			context) -> new AuthorizationDecision(true);
+	private static final Authentication USER = UsernamePasswordAuthenticationToken.authenticated("user", null,
+			AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+	@Param({ "0", "16", "128", "1024" })
+	public int reviewEndpoints;
+
+	private RequestMatcherDelegatingAuthorizationManager antManager;
+	private List<RequestAuthorizationContext> contexts;
+	private List<MockHttpServletRequest> requests;
+	private PathTrieAuthorizationManager trieManager;
+
+	@Test
+	@EnabledIfSystemProperty(named = "fsqr.benchmark", matches = "true")
+	public void check_trieAgainstAntMatchers() throws RunnerException {
+		new Runner(new OptionsBuilder().include(getClass().getName()).build()).run();
+	}
+
+	@Setup
+	public void setup() {
+		PathTrieAuthorizationManager.Builder trie = PathTrieAuthorizationManager.builder() //
+				.permitAll("/rest/login/**", "/rest/user/csrf", "/rest/user/info", "/rest/say-hello") //
+				.hasRole(UserRole.ADMIN, "/rest/admin/**");
+		RequestMatcherDelegatingAuthorizationManager.Builder ant = RequestMatcherDelegatingAuthorizationManager
+				.builder();
+		for (String pattern : List.of("/rest/login/**", "/rest/user/csrf", "/rest/user/info", "/rest/say-hello")) {
+			ant.add(new AntPathRequestMatcher(pattern), PERMIT_ALL);
+		}
+		ant.add(new AntPathRequestMatcher("/rest/admin/**"), AuthorityAuthorizationManager.hasRole("ADMIN"));
+		for (int i = 0; i < reviewEndpoints; i++) {
+			String pattern = "/rest/review/project" + i + "/**";
+			trie.hasRole(UserRole.USER, pattern);
+			ant.add(new AntPathRequestMatcher(pattern), AuthorityAuthorizationManager.hasRole("USER"));
+		}
+		trie.authenticated("/rest/**").hasRole(UserRole.ADMIN, "/restdata/**");
+		ant.add(new AntPathRequestMatcher("/rest/**"), AuthenticatedAuthorizationManager.authenticated());
+		ant.add(new AntPathRequestMatcher("/restdata/**"), AuthorityAuthorizationManager.hasRole("ADMIN"));
+
+		requests = createRequests();
+		contexts = requests.stream().map(RequestAuthorizationContext::new).toList();
+		trieManager = trie.build();
+		antManager = ant.build();
+	}
+
+	@Benchmark
+	public void checkTrie(Blackhole blackhole) {
+		for (RequestAuthorizationContext context : contexts) {
+			blackhole.consume(trieManager.check(() -> USER, context));
+		}
+	}
+
+	@Benchmark
+	public void checkAnt(Blackhole blackhole) {
+		for (MockHttpServletRequest request : requests) {
+			blackhole.consume(antManager.check(() -> USER, request));
+		}
+	}
+
+	private List<MockHttpServletRequest> createRequests() {
+		List<String> paths = new ArrayList<>(List.of("/rest/user/csrf", "/rest/user/search", "/rest/admin/users",
+				"/restdata/user", "/index.html"));
+		if (reviewEndpoints > 0) {
+			paths.add("/rest/review/project" + (reviewEndpoints - 1) + "/revisions/42");
+		}
+		List<MockHttpServletRequest> result = new ArrayList<>();
+		for (String path : paths) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+			request.setServletPath(path);
+			result.add(request);
+		}
+		return result;
+	}
+}
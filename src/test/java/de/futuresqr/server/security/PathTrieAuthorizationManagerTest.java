@@ -0,0 +1,165 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import de.futuresqr.server.model.backend.UserRole;
+
+/**
+ * Tests for {@link PathTrieAuthorizationManager}. The decisions are compared
+ * with the same rules declared as <code>antMatchers</code>.
+ * 
+ * @author Robert Breunung
+ */
+public class PathTrieAuthorizationManagerTest {
+
+	private static final AuthorizationManager<RequestAuthorizationContext> PERMIT_ALL = (authentication,
+			context) -> new AuthorizationDecision(true);
+
+	private static final Authentication ANONYMOUS = new AnonymousAuthenticationToken("key", "anonymous",
+			AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+	private static final Authentication USER = UsernamePasswordAuthenticationToken.authenticated("user", null,
+			AuthorityUtils.createAuthorityList("ROLE_USER"));
+	private static final Authentication ADMIN = UsernamePasswordAuthenticationToken.authenticated("admin", null,
+			AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+
+	private static final List<String> PATHS = List.of("", "/", "/index.html", "/rest", "/rest/", "/rest/login",
+			"/rest/login/", "/rest/login/x", "/rest/user/csrf", "/rest/user/csrf/", "/rest/user/csrf/x",
+			"/rest/user/info", "/rest/say-hello", "/rest/admin", "/rest/admin/cacheStatistics",
+			"/rest/user/search", "/restdata", "/restdata/user", "/restx",
+			"/Rest/admin");
+
+	@Test
+	public void check_securityConfigurationRules_sameAsAntMatchers() {
+		PathTrieAuthorizationManager trie = PathTrieAuthorizationManager.builder() //
+				.permitAll("/rest/login/**", "/rest/user/csrf", "/rest/user/info") //
+				.permitAll("/rest/say-hello") //
+				.hasRole(UserRole.ADMIN, "/rest/admin/**") //
+				.authenticated("/rest/**") //
+				.hasRole(UserRole.ADMIN, "/restdata/**").build();
+		RequestMatcherDelegatingAuthorizationManager ant = RequestMatcherDelegatingAuthorizationManager.builder() //
+				.add(new AntPathRequestMatcher("/rest/login/**"), PERMIT_ALL) //
+				.add(new AntPathRequestMatcher("/rest/user/csrf"), PERMIT_ALL) //
+				.add(new AntPathRequestMatcher("/rest/user/info"), PERMIT_ALL) //
+				.add(new AntPathRequestMatcher("/rest/say-hello"), PERMIT_ALL) //
+				.add(new AntPathRequestMatcher("/rest/admin/**"), AuthorityAuthorizationManager.hasRole("ADMIN")) //
+				.add(new AntPathRequestMatcher("/rest/**"), AuthenticatedAuthorizationManager.authenticated()) //
+				.add(new AntPathRequestMatcher("/restdata/**"), AuthorityAuthorizationManager.hasRole("ADMIN"))
+				.build();
+
+		for (String path : PATHS) {
+			for (Authentication authentication : List.of(ANONYMOUS, USER, ADMIN)) {
+				MockHttpServletRequest request = request("GET", path);
+				assertEquals(granted(ant.check(() -> authentication, request)),
+						granted(trie.check(() -> authentication, new RequestAuthorizationContext(request))),
+						() -> path + " " + authentication.getName());
+			}
+		}
+	}
+
+	@Test
+	public void check_firstDeclaredRuleDecides() {
+		PathTrieAuthorizationManager trie = PathTrieAuthorizationManager.builder() //
+				.authenticated("/rest/**") //
+				.permitAll("/rest/public").build();
+
+		assertFalse(check(trie, "GET", "/rest/public", ANONYMOUS));
+	}
+
+	@Test
+	public void check_methodRule_otherMethodFallsThrough() {
+		PathTrieAuthorizationManager trie = PathTrieAuthorizationManager.builder() //
+				.rule(HttpMethod.GET, PERMIT_ALL, "/rest/review/**") //
+				.authenticated("/rest/**").build();
+
+		assertTrue(check(trie, "GET", "/rest/review/1", ANONYMOUS));
+		assertFalse(check(trie, "POST", "/rest/review/1", ANONYMOUS));
+	}
+
+	@Test
+	public void check_noRule_denied() {
+		PathTrieAuthorizationManager trie = PathTrieAuthorizationManager.builder().authenticated("/rest/**").build();
+
+		assertFalse(check(trie, "GET", "/index.html", ADMIN));
+	}
+
+	@Test
+	public void check_denyAllDefault_declaredRulesDecideFirst() {
+		PathTrieAuthorizationManager trie = PathTrieAuthorizationManager.builder() //
+				.permitAll("/", "/index.html") //
+				.authenticated("/rest/**") //
+				.denyAll("/**").build();
+
+		assertTrue(check(trie, "GET", "/", ANONYMOUS));
+		assertTrue(check(trie, "GET", "/rest/user/search", USER));
+		assertFalse(check(trie, "GET", "/unknown/path", ADMIN));
+	}
+
+	@Test
+	public void builder_wildcardSegment_rejected() {
+		assertThrows(IllegalArgumentException.class,
+				() -> PathTrieAuthorizationManager.builder().permitAll("/rest/*/info"));
+	}
+
+	private static boolean check(PathTrieAuthorizationManager trie, String method, String path,
+			Authentication authentication) {
+		Supplier<Authentication> supplier = () -> authentication;
+		return trie.check(supplier, new RequestAuthorizationContext(request(method, path))).isGranted();
+	}
+
+	/**
+	 * Undecided requests are denied by the trie.
+	 */
+	private static boolean granted(AuthorizationDecision decision) {
+		return decision != null && decision.isGranted();
+	}
+
+	private static MockHttpServletRequest request(String method, String path) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+		request.setServletPath(path);
+		return request;
+	}
+}
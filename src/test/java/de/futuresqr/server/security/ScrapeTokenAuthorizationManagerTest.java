@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.security;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+/**
+ * Tests for {@link ScrapeTokenAuthorizationManager}.
+ * 
+ * @author Robert Breunung
+ */
+public class ScrapeTokenAuthorizationManagerTest {
+
+	private static final Authentication ANONYMOUS = new AnonymousAuthenticationToken("key", "anonymous",
+			AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+	private static final Authentication ADMIN = UsernamePasswordAuthenticationToken.authenticated("admin", null,
+			AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+
+	@Test
+	public void check_scrapeToken_granted() {
+		assertTrue(check("secret", "Bearer secret", ANONYMOUS));
+	}
+
+	@Test
+	public void check_otherToken_denied() {
+		assertFalse(check("secret", "Bearer guess", ANONYMOUS));
+	}
+
+	@Test
+	public void check_noTokenConfigured_denied() {
+		assertFalse(check("", "Bearer ", ANONYMOUS));
+	}
+
+	@Test
+	public void check_admin_grantedByFallback() {
+		assertTrue(check("secret", null, ADMIN));
+	}
+
+	private boolean check(String scrapeToken, String authorization, Authentication authentication) {
+		ScrapeTokenAuthorizationManager manager = new ScrapeTokenAuthorizationManager(scrapeToken,
+				AuthorityAuthorizationManager.hasRole("ADMIN"));
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+		if (authorization != null) {
+			request.addHeader(AUTHORIZATION, authorization);
+		}
+		return manager.check(() -> authentication, new RequestAuthorizationContext(request)).isGranted();
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.security;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import de.futuresqr.server.model.backend.UserRole;
+
+/**
+ * Tests for {@link UserRoleAuthorizationManager}.
+ * 
+ * @author Robert Breunung
+ */
+public class UserRoleAuthorizationManagerTest {
+
+	private static final UserRoleAuthorizationManager<Object> ADMIN_ONLY = UserRoleAuthorizationManager
+			.hasAnyRole(UserRole.ADMIN);
+
+	@Test
+	public void check_roleInMask_granted() {
+		assertTrue(check(UsernamePasswordAuthenticationToken.authenticated("admin", null,
+				UserRole.toGrantedAuthorities(UserRole.toMask(UserRole.USER, UserRole.ADMIN)))));
+	}
+
+	@Test
+	public void check_roleNotInMask_denied() {
+		assertFalse(check(UsernamePasswordAuthenticationToken.authenticated("user", null,
+				UserRole.toGrantedAuthorities(UserRole.toMask(UserRole.USER)))));
+	}
+
+	@Test
+	public void check_foreignRoleAuthority_grantedByName() {
+		assertTrue(check(UsernamePasswordAuthenticationToken.authenticated("admin", null,
+				AuthorityUtils.createAuthorityList("ROLE_ADMIN"))));
+	}
+
+	@Test
+	public void check_anonymous_denied() {
+		assertFalse(check(new AnonymousAuthenticationToken("key", "anonymous",
+				AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"))));
+	}
+
+	@Test
+	public void check_unauthenticated_denied() {
+		assertFalse(check(UsernamePasswordAuthenticationToken.unauthenticated("admin", "secret")));
+	}
+
+	private static boolean check(Authentication authentication) {
+		return ADMIN_ONLY.check(() -> authentication, null).isGranted();
+	}
+}
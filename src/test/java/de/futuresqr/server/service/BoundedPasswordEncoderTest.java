@@ -0,0 +1,135 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for {@link BoundedPasswordEncoder} and
+ * {@link PasswordEncoderFactory}.
+ * 
+ * @author Robert Breunung
+ */
+public class BoundedPasswordEncoderTest {
+
+	private ExecutorService callers;
+
+	@BeforeEach
+	public void setup() {
+		callers = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void encode_validPassword_matches() {
+		BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(
+				PasswordEncoderFactory.createDelegatingPasswordEncoder(4), 1, 1, Duration.ofSeconds(5));
+
+		String encoded = encoder.encode("secret");
+
+		assertTrue(encoded.startsWith("{bcrypt}"), "Encoded password shall carry the algorithm id.");
+		assertTrue(encoder.matches("secret", encoded), "Password shall match.");
+		encoder.destroy();
+	}
+
+	@Test
+	public void encode_boundToRegistry_hashingTimed() {
+		BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(
+				PasswordEncoderFactory.createDelegatingPasswordEncoder(4), 1, 1, Duration.ofSeconds(5));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		encoder.bindTo(registry);
+
+		encoder.matches("secret", encoder.encode("secret"));
+
+		assertEquals(2, registry.get("fsqr.password.hashing").timer().count(), "Both hash operations shall be timed.");
+		assertEquals(0, registry.get("fsqr.password.hashing.queue").gauge().value(), "Queue shall be empty.");
+		encoder.destroy();
+	}
+
+	@Test
+	public void encode_queueFull_rejected() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		PasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+			@Override
+			public String encode(CharSequence rawPassword) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.encode(rawPassword);
+			}
+		};
+		BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blockingEncoder, 1, 1, Duration.ofSeconds(5));
+
+		callers.submit(() -> encoder.encode("running"));
+		started.await();
+		callers.submit(() -> encoder.encode("queued"));
+		while (encoder.getQueueSize() == 0) {
+			Thread.yield();
+		}
+
+		assertThrows(PasswordHashingRejectedException.class, () -> encoder.encode("rejected"));
+		release.countDown();
+		encoder.destroy();
+	}
+
+	@Test
+	public void upgradeEncoding_legacyBCryptHash_upgradeRequested() {
+		PasswordEncoder encoder = PasswordEncoderFactory.createDelegatingPasswordEncoder(5);
+		String legacyHash = new BCryptPasswordEncoder(4).encode("secret");
+
+		assertTrue(encoder.matches("secret", legacyHash), "Legacy hash without prefix shall match.");
+		assertTrue(encoder.upgradeEncoding(legacyHash), "Legacy hash shall be upgraded.");
+	}
+
+	@Test
+	public void upgradeEncoding_currentHash_noUpgrade() {
+		PasswordEncoder encoder = PasswordEncoderFactory.createDelegatingPasswordEncoder(5);
+
+		assertFalse(encoder.upgradeEncoding(encoder.encode("secret")), "Current hash shall not be upgraded.");
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.futuresqr.server.model.frontend.UserImportRow;
+
+/**
+ * Unit tests for {@link CsvUserImportReader}.
+ * 
+ * @author Robert Breunung
+ */
+public class CsvUserImportReaderTest {
+
+	@Test
+	public void next_headerWithReorderedColumns_valuesAssigned() throws Exception {
+		String csv = "password,loginname,displayname\nsecret,otto,\"Normal, Otto\"\n\n";
+
+		CsvUserImportReader reader = new CsvUserImportReader(new ByteArrayInputStream(csv.getBytes(UTF_8)));
+		UserImportRow row = reader.next();
+
+		assertEquals("otto", row.getLoginname(), "Login name expected.");
+		assertEquals("secret", row.getPassword(), "Password expected.");
+		assertEquals("Normal, Otto", row.getDisplayname(), "Quoted display name expected.");
+		assertNull(row.getEmail(), "Missing column shall be null.");
+		assertFalse(reader.hasNext(), "Empty lines shall be skipped.");
+	}
+
+	@Test
+	public void parseLine_escapedQuote_unescaped() {
+		assertEquals(List.of("a\"b", "c"), CsvUserImportReader.parseLine("\"a\"\"b\",c"), "Escaped quote expected.");
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.futuresqr.server.service.LoginThrottle.Limit;
+
+/**
+ * Unit tests for {@link LoginThrottle}.
+ * 
+ * @author Robert Breunung
+ */
+public class LoginThrottleTest {
+
+	private static final String ADDRESS = "192.0.2.1";
+
+	private AtomicLong nanos;
+
+	private LoginThrottle throttle;
+
+	@BeforeEach
+	public void setup() {
+		nanos = new AtomicLong(1_000_000_000L);
+		throttle = new LoginThrottle(new Limit(3, Duration.ofMinutes(1)), new Limit(5, Duration.ofSeconds(1)), 100,
+				nanos::get);
+	}
+
+	@Test
+	public void tryAcquire_burstOfAccount_fourthAttemptRejected() {
+		for (int i = 0; i < 3; i++) {
+			assertNull(throttle.tryAcquire(ADDRESS, "admin"), "Attempt within capacity.");
+		}
+
+		Duration retryAfter = throttle.tryAcquire(ADDRESS, "Admin");
+
+		assertEquals(Duration.ofMinutes(1), retryAfter, "One refill period to wait.");
+		assertEquals(1, throttle.getRejectedByAccount());
+	}
+
+	@Test
+	public void tryAcquire_refillPeriodPassed_attemptPermitted() {
+		for (int i = 0; i < 3; i++) {
+			throttle.tryAcquire(ADDRESS, "admin");
+		}
+
+		nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+
+		assertNull(throttle.tryAcquire(ADDRESS, "admin"), "Refilled token expected.");
+	}
+
+	@Test
+	public void tryAcquire_manyAccountsOfOneAddress_addressRejected() {
+		for (int i = 0; i < 5; i++) {
+			assertNull(throttle.tryAcquire(ADDRESS, "user" + i), "Attempt within capacity.");
+		}
+
+		assertNotNull(throttle.tryAcquire(ADDRESS, "user5"), "Address over limit.");
+		assertEquals(1, throttle.getRejectedByAddress());
+		assertEquals(5, throttle.getPermitted());
+	}
+}
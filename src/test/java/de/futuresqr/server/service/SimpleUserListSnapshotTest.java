@@ -0,0 +1,107 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+
+/**
+ * Unit tests for {@link SimpleUserListSnapshot}.
+ * 
+ * @author Robert Breunung
+ */
+@ExtendWith(MockitoExtension.class)
+public class SimpleUserListSnapshotTest {
+
+	private static final byte[] LIST = "[{\"displayname\":\"Otto Normal\"}]".getBytes(UTF_8);
+
+	@Mock
+	private PrimaryReads primaryReads;
+
+	@InjectMocks
+	private SimpleUserListSnapshot snapshot;
+
+	@Mock
+	private UserDirectoryVersion userDirectoryVersion;
+
+	@Mock
+	private UserListWriter userListWriter;
+
+	@BeforeEach
+	public void setup() throws Exception {
+		when(userDirectoryVersion.getETag()).thenReturn("\"1\"");
+		when(primaryReads.execute(any())).then(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+		doAnswer(invocation -> {
+			invocation.<OutputStream>getArgument(0).write(LIST);
+			return null;
+		}).when(userListWriter).writeSimpleUserList(any());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		snapshot.destroy();
+	}
+
+	@Test
+	public void getCurrent_rebuilt_identityAndGzipPresent() throws Exception {
+		snapshot.rebuild();
+
+		SimpleUserListSnapshot.Content content = snapshot.getCurrent();
+
+		assertNotNull(content, "Snapshot expected.");
+		assertArrayEquals(LIST, content.getIdentity(), "Serialized list expected.");
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(content.getGzip()))) {
+			assertArrayEquals(LIST, gzip.readAllBytes(), "Compressed list expected.");
+		}
+	}
+
+	@Test
+	public void getCurrent_directoryChangedAfterRebuild_outdated() {
+		snapshot.rebuild();
+
+		when(userDirectoryVersion.getETag()).thenReturn("\"2\"");
+
+		assertNull(snapshot.getCurrent(), "Outdated snapshot shall not be served.");
+	}
+}
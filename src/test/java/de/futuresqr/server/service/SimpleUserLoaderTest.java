@@ -0,0 +1,106 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+
+/**
+ * Unit tests for {@link SimpleUserLoader}.
+ * 
+ * @author Robert Breunung
+ */
+@ExtendWith(MockitoExtension.class)
+public class SimpleUserLoaderTest {
+
+	private static final SimpleUserDto ADA = new SimpleUserDto(UUID.randomUUID(), "Ada", null);
+	private static final SimpleUserDto BOB = new SimpleUserDto(UUID.randomUUID(), "Bob", null);
+	private static final UUID UNKNOWN = UUID.randomUUID();
+
+	@InjectMocks
+	private SimpleUserLoader loader;
+
+	@Mock
+	private SimpleUserLookup simpleUserLookup;
+
+	@Test
+	public void dispatch_loadsOfOneRequest_oneBatchLookup() {
+		when(simpleUserLookup.findByIds(anyCollection())).thenReturn(Map.of(ADA.getUuid(), ADA, BOB.getUuid(), BOB));
+
+		CompletableFuture<SimpleUserDto> ada = loader.load(ADA.getUuid());
+		List<CompletableFuture<SimpleUserDto>> many = loader.loadMany(List.of(BOB.getUuid(), ADA.getUuid(), UNKNOWN));
+		loader.dispatch();
+
+		verify(simpleUserLookup).findByIds(Set.of(ADA.getUuid(), BOB.getUuid(), UNKNOWN));
+		assertSame(ada, many.get(1));
+		assertEquals(ADA, ada.join());
+		assertEquals(BOB, many.get(0).join());
+		assertNull(many.get(2).join());
+	}
+
+	@Test
+	public void load_alreadyResolved_noFurtherLookup() {
+		when(simpleUserLookup.findByIds(anyCollection())).thenReturn(Map.of(ADA.getUuid(), ADA));
+		loader.load(ADA.getUuid());
+		loader.dispatch();
+
+		CompletableFuture<SimpleUserDto> again = loader.load(ADA.getUuid());
+		loader.dispatch();
+
+		assertEquals(ADA, again.getNow(null));
+		verify(simpleUserLookup).findByIds(anyCollection());
+		verifyNoMoreInteractions(simpleUserLookup);
+	}
+
+	@Test
+	public void dispatch_lookupFails_pendingUsersFailed() {
+		IllegalStateException failure = new IllegalStateException("unavailable");
+		when(simpleUserLookup.findByIds(anyCollection())).thenThrow(failure);
+		CompletableFuture<SimpleUserDto> ada = loader.load(ADA.getUuid());
+
+		assertSame(failure, assertThrows(IllegalStateException.class, loader::dispatch));
+		assertTrue(ada.isCompletedExceptionally());
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * Unit tests for {@link SimpleUserLookup}.
+ * 
+ * @author Robert Breunung
+ */
+public class SimpleUserLookupTest {
+
+	private static final SimpleUserDto ADA = new SimpleUserDto(UUID.randomUUID(), "Ada", null);
+	private static final SimpleUserDto BOB = new SimpleUserDto(UUID.randomUUID(), "Bob", null);
+	private static final SimpleUserDto EVE = new SimpleUserDto(UUID.randomUUID(), "Eve", null);
+
+	private SimpleUserLookup lookup;
+
+	private UserRepository userRepository;
+
+	@BeforeEach
+	public void setup() {
+		userRepository = mock(UserRepository.class);
+		when(userRepository.findSimpleUsersByIds(anyCollection())).then(invocation -> {
+			Collection<UUID> uuids = invocation.getArgument(0);
+			return List.of(ADA, BOB, EVE).stream().filter(u -> uuids.contains(u.getUuid())).toList();
+		});
+		PrimaryReads primaryReads = mock(PrimaryReads.class);
+		when(primaryReads.execute(any())).then(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+		lookup = new SimpleUserLookup(userRepository, primaryReads, 2, 10, Duration.ofMinutes(5));
+	}
+
+	@Test
+	public void findListByIds_duplicatesAndUnknownIds_knownUsersInRequestOrder() {
+		List<SimpleUserDto> users = lookup
+				.findListByIds(List.of(EVE.getUuid(), UUID.randomUUID(), ADA.getUuid(), EVE.getUuid()));
+
+		assertEquals(List.of(EVE, ADA), users);
+	}
+
+	@Test
+	public void findByIds_moreIdsThanChunkSize_loadedInChunks() {
+		lookup.findByIds(List.of(ADA.getUuid(), BOB.getUuid(), EVE.getUuid()));
+
+		verify(userRepository, times(2)).findSimpleUsersByIds(anyCollection());
+	}
+
+	@Test
+	public void findByIds_repeatedIds_servedFromCache() {
+		lookup.findByIds(List.of(ADA.getUuid(), BOB.getUuid()));
+
+		lookup.findByIds(List.of(BOB.getUuid(), ADA.getUuid()));
+
+		verify(userRepository, times(1)).findSimpleUsersByIds(anyCollection());
+	}
+
+	@Test
+	public void onUserChanged_cachedUser_reloaded() {
+		lookup.findByIds(List.of(ADA.getUuid()));
+
+		lookup.onUserChanged(new UserChangedEvent(ADA.getUuid(), "ada"));
+		lookup.findByIds(List.of(ADA.getUuid()));
+
+		verify(userRepository, times(2)).findSimpleUsersByIds(anyCollection());
+	}
+}
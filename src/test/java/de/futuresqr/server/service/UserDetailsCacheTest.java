@@ -0,0 +1,100 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+/**
+ * Unit tests for {@link UserDetailsCache}.
+ * 
+ * @author Robert Breunung
+ */
+public class UserDetailsCacheTest {
+
+	private static final String LOGIN_NAME = "known";
+
+	private UserDetailsCache cache;
+
+	private AtomicInteger loadCount;
+
+	private Function<String, UserDetails> loader;
+
+	@BeforeEach
+	public void setup() {
+		cache = new UserDetailsCache(10, Duration.ofMinutes(5));
+		loadCount = new AtomicInteger();
+		loader = name -> {
+			loadCount.incrementAndGet();
+			return User.withUsername(name).password("secret").roles("USER").build();
+		};
+	}
+
+	@Test
+	public void get_repeatedCall_loadedOnce() {
+		cache.get(LOGIN_NAME, loader);
+		cache.get(LOGIN_NAME, loader);
+
+		assertEquals(1, loadCount.get(), "Second call shall be served by the cache.");
+		assertEquals(1, cache.getStatistics().hitCount(), "One hit expected.");
+	}
+
+	@Test
+	public void get_repeatedCall_returnsCopy() {
+		UserDetails first = cache.get(LOGIN_NAME, loader);
+		UserDetails second = cache.get(LOGIN_NAME, loader);
+
+		assertNotSame(first, second, "Principal must not be shared between authentications.");
+		assertEquals("secret", second.getPassword(), "Credentials of the cached entry shall remain.");
+	}
+
+	@Test
+	public void get_unknownUser_exceptionPropagated() {
+		assertThrows(UsernameNotFoundException.class, () -> cache.get(LOGIN_NAME, name -> {
+			throw new UsernameNotFoundException(name);
+		}));
+	}
+
+	@Test
+	public void onUserChanged_cachedUser_reloaded() {
+		cache.get(LOGIN_NAME, loader);
+
+		cache.onUserChanged(new UserChangedEvent(UUID.randomUUID(), LOGIN_NAME));
+		cache.get(LOGIN_NAME, loader);
+
+		assertEquals(2, loadCount.get(), "Changed user shall be loaded again.");
+	}
+}
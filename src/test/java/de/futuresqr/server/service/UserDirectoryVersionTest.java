@@ -0,0 +1,161 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.backend.UserDirectoryState;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * Unit tests for {@link UserDirectoryVersion}.
+ * 
+ * @author Robert Breunung
+ */
+public class UserDirectoryVersionTest {
+
+	private static final Instant CHANGE = Instant.parse("2022-10-01T10:15:30.123456Z");
+
+	private UserDirectoryVersion directoryVersion;
+
+	private AtomicLong nanoTime;
+
+	private UserRepository userRepository;
+
+	@BeforeEach
+	public void setup() {
+		nanoTime = new AtomicLong();
+		userRepository = mock(UserRepository.class);
+		setState(2, CHANGE);
+		PrimaryReads primaryReads = mock(PrimaryReads.class);
+		when(primaryReads.execute(any())).then(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+		directoryVersion = new UserDirectoryVersion(userRepository, primaryReads, Duration.ofSeconds(1),
+				nanoTime::get);
+	}
+
+	@Test
+	public void checkNotModified_currentETag_notModified() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		boolean notModified = directoryVersion.checkNotModified(createRequest(directoryVersion.getETag(), response));
+
+		assertTrue(notModified, "Current version shall not be transferred again.");
+		assertEquals(304, response.getStatus(), "Status not modified expected.");
+	}
+
+	@Test
+	public void checkNotModified_userChanged_modified() {
+		String eTag = directoryVersion.getETag();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		setState(2, CHANGE.plusMillis(1));
+		directoryVersion.onUserChanged(new UserChangedEvent(UUID.randomUUID(), "known"));
+		boolean notModified = directoryVersion.checkNotModified(createRequest(eTag, response));
+
+		assertFalse(notModified, "Outdated version shall be transferred.");
+		assertNotEquals(eTag, response.getHeader(ETAG), "New entity tag expected.");
+	}
+
+	@Test
+	public void getETag_changeOfOtherNodeAfterRefreshInterval_changed() {
+		String eTag = directoryVersion.getETag();
+
+		setState(3, CHANGE.plusSeconds(5));
+		String withinInterval = directoryVersion.getETag();
+		nanoTime.addAndGet(Duration.ofSeconds(1).toNanos());
+
+		assertEquals(eTag, withinInterval, "Version shall be read at most once per interval.");
+		assertNotEquals(eTag, directoryVersion.getETag(), "Change of another node shall be detected.");
+	}
+
+	@Test
+	public void getLastModified_changesWithinSecond_notInFuture() {
+		setState(2, CHANGE.plusMillis(10));
+		for (int i = 0; i < 100; i++) {
+			directoryVersion.onUserChanged(new UserChangedEvent(UUID.randomUUID(), "imported" + i));
+		}
+
+		assertEquals(Instant.parse("2022-10-01T10:15:30Z"), directoryVersion.getLastModified(),
+				"Last modified shall be the change in second precision.");
+	}
+
+	@Test
+	public void checkNotModified_otherUser_modified() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		directoryVersion.checkNotModified(createRequest(null, response), "user");
+		String userETag = response.getHeader(ETAG);
+
+		boolean notModified = directoryVersion.checkNotModified(createRequest(userETag, new MockHttpServletResponse()),
+				"admin");
+
+		assertFalse(notModified, "Entity tag of another user shall not match.");
+	}
+
+	@Test
+	public void checkNotModifiedEncoded_identityETag_modified() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		boolean notModified = directoryVersion.checkNotModifiedEncoded(createRequest(directoryVersion.getETag(),
+				response), "gzip");
+
+		assertFalse(notModified, "Entity tag of the identity coding shall not match.");
+		assertTrue(response.getHeader(ETAG).endsWith("-gzip\""), "Entity tag of the content coding expected.");
+	}
+
+	private ServletWebRequest createRequest(String ifNoneMatch, MockHttpServletResponse response) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rest/user/simpleList");
+		if (ifNoneMatch != null) {
+			request.addHeader(IF_NONE_MATCH, ifNoneMatch);
+		}
+		return new ServletWebRequest(request, response);
+	}
+
+	private void setState(long userCount, Instant lastChangeDate) {
+		UserDirectoryState state = mock(UserDirectoryState.class);
+		when(state.getUserCount()).thenReturn(userCount);
+		when(state.getLastChangeDate()).thenReturn(lastChangeDate);
+		when(userRepository.findDirectoryState()).thenReturn(state);
+	}
+}
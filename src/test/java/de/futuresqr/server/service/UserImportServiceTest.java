@@ -0,0 +1,181 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_CREATED;
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_DUPLICATE;
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_FAILED;
+import static de.futuresqr.server.model.frontend.UserImportResult.STATUS_INVALID;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.restdata.UserRepository;
+import de.futuresqr.server.service.UserImportService.Format;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Unit tests for {@link UserImportService} with a chunk size of two rows.
+ * 
+ * @author Robert Breunung
+ */
+@ExtendWith(MockitoExtension.class)
+public class UserImportServiceTest {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	@Mock
+	private EntityManager entityManager;
+
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+
+	@Mock
+	private PasswordEncoder passwordEncoder;
+
+	@Mock
+	private UserRepository userRepository;
+
+	private PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	@InjectMocks
+	private UserImportService importService = new UserImportService(OBJECT_MAPPER, transactionManager, 2, 2, 4,
+			64);
+
+	@BeforeEach
+	public void setup() {
+		lenient().when(userRepository.findExistingLoginNames(anyCollection())).then(invocation -> {
+			Collection<String> loginNames = invocation.getArgument(0);
+			return loginNames.contains("known") ? Set.of("known") : Set.of();
+		});
+		lenient().when(passwordEncoder.encode(anyString())).then(invocation -> {
+			String password = invocation.getArgument(0);
+			if (password.equals("unhashable")) {
+				throw new IllegalStateException("Password hashing failed.");
+			}
+			return "{noop}" + password;
+		});
+		lenient().doAnswer(invocation -> {
+			invocation.<PersistenceUser>getArgument(0).setUuid(UUID.randomUUID());
+			return null;
+		}).when(entityManager).persist(any());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		importService.destroy();
+	}
+
+	@Test
+	public void importUsers_rowsOfThreeChunks_loginNamesCheckedPerChunk() throws Exception {
+		List<String> statuses = importUsers("loginname,password\na,1\nb,2\nc,3\nd,4\ne,5\n");
+
+		assertEquals(List.of(STATUS_CREATED, STATUS_CREATED, STATUS_CREATED, STATUS_CREATED, STATUS_CREATED),
+				statuses);
+		verify(userRepository, times(3)).findExistingLoginNames(anyCollection());
+		verify(entityManager, times(5)).persist(any());
+	}
+
+	@Test
+	public void importUsers_existingAndRepeatedLoginNames_duplicate() throws Exception {
+		List<String> statuses = importUsers("loginname,password\nknown,1\nnew,2\nnew,3\n");
+
+		assertEquals(List.of(STATUS_DUPLICATE, STATUS_CREATED, STATUS_DUPLICATE), statuses);
+	}
+
+	@Test
+	public void importUsers_missingPassword_invalid() throws Exception {
+		List<String> statuses = importUsers("loginname,password\nnopassword,\nvalid,1\n");
+
+		assertEquals(List.of(STATUS_INVALID, STATUS_CREATED), statuses);
+	}
+
+	@Test
+	public void importUsers_hashingFailedThenSameLoginName_created() throws Exception {
+		List<String> statuses = importUsers("loginname,password\nretry,unhashable\nretry,2\n");
+
+		assertEquals(List.of(STATUS_FAILED, STATUS_CREATED), statuses);
+	}
+
+	@Test
+	public void importUsers_createdUsers_eventPerCreatedUser() throws Exception {
+		importUsers("loginname,password\nknown,1\nnew,2\nother,3\n");
+
+		verify(eventPublisher, times(2)).publishEvent(any(UserChangedEvent.class));
+	}
+
+	@Test
+	public void limitImportThreads_default_halfOfHashingThreads() {
+		assertEquals(4, UserImportService.limitImportThreads(0, 8, 64));
+	}
+
+	@Test
+	public void limitImportThreads_smallQueue_quarterOfQueue() {
+		assertEquals(2, UserImportService.limitImportThreads(16, 8, 8));
+	}
+
+	@Test
+	public void limitImportThreads_singleHashingThread_oneThread() {
+		assertEquals(1, UserImportService.limitImportThreads(0, 1, 64));
+	}
+
+	private List<String> importUsers(String csv) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		importService.importUsers(new ByteArrayInputStream(csv.getBytes(UTF_8)), Format.CSV, output);
+		List<String> statuses = new ArrayList<>();
+		OBJECT_MAPPER.readerFor(JsonNode.class).<JsonNode>readValues(output.toByteArray())
+				.forEachRemaining(result -> statuses.add(result.get("status").asText()));
+		return statuses;
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserDirectoryState;
+import de.futuresqr.server.model.backend.UserProjection;
+import de.futuresqr.server.model.backend.UserVcsName;
+import de.futuresqr.server.model.frontend.SimpleUserDto;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * Unit tests for {@link UserSearchIndex}.
+ * 
+ * @author Robert Breunung
+ */
+@ExtendWith(MockitoExtension.class)
+public class UserSearchIndexTest {
+
+	private static final PersistenceUser ADA = PersistenceUser.builder().uuid(UUID.randomUUID()).loginName("ada")
+			.displayName("Ada Lovelace").email("countess@analytical.engine").build();
+	private static final PersistenceUser BANNED = PersistenceUser.builder().uuid(UUID.randomUUID())
+			.loginName("mallory").displayName("Mallory Adams").email("mallory@evil.corp").banned(true).build();
+	private static final PersistenceUser GRACE = PersistenceUser.builder().uuid(UUID.randomUUID())
+			.loginName("ghopper").displayName("Grace Hopper").email("grace@navy.mil").build();
+
+	@InjectMocks
+	private UserSearchIndex index;
+
+	@Mock
+	private PrimaryReads primaryReads;
+
+	@Mock
+	private UserDirectoryVersion userDirectoryVersion;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@BeforeEach
+	public void setup() {
+		UserDirectoryState state = directoryState(3);
+		lenient().when(userDirectoryVersion.getState()).thenReturn(state);
+		when(primaryReads.execute(any())).then(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+		when(userRepository.streamVcsNames()).thenReturn(Stream.empty());
+		when(userRepository.streamUserProjections()).thenReturn(Stream.<UserProjection>of(ADA, BANNED, GRACE));
+	}
+
+	@Test
+	public void search_substring_userFound() {
+		assertEquals(List.of(GRACE.getUuid()), uuids(index.search("oppe", 10, false)));
+	}
+
+	@Test
+	public void search_shortQuery_wordPrefixesFound() {
+		assertEquals(List.of(ADA.getUuid()), uuids(index.search("LO", 10, false)));
+	}
+
+	@Test
+	public void search_exactLogin_rankedFirst() {
+		// "ada" is a prefix of "adams" as well
+		assertEquals(List.of(ADA.getUuid(), BANNED.getUuid()), uuids(index.search("ada", 10, true)));
+	}
+
+	@Test
+	public void search_bannedExcluded_bannedUserMissing() {
+		assertEquals(List.of(ADA.getUuid()), uuids(index.search("ada", 10, false)));
+	}
+
+	@Test
+	public void search_unknownText_noMatch() {
+		assertTrue(index.search("turing", 10, false).isEmpty());
+	}
+
+	@Test
+	public void update_vcsNameAdded_userFoundByVcsName() {
+		index.search("warmup", 1, false);
+		UserVcsName vcsName = mock(UserVcsName.class);
+		when(vcsName.getUuid()).thenReturn(GRACE.getUuid());
+		when(vcsName.getVcsName()).thenReturn("Grace M. Hopper <gmh@cobol.org>");
+		when(userRepository.findAllById(List.of(GRACE.getUuid()))).thenReturn(List.of(GRACE));
+		when(userRepository.findVcsNamesByUuids(List.of(GRACE.getUuid()))).thenReturn(List.of(vcsName));
+
+		index.update(List.of(GRACE.getUuid()));
+
+		assertEquals(List.of(GRACE.getUuid()), uuids(index.search("cobol", 10, false)));
+	}
+
+	@Test
+	public void update_batchWithDeletedUser_userRemovedOthersKept() {
+		index.search("warmup", 1, false);
+		List<UUID> batch = List.of(ADA.getUuid(), GRACE.getUuid());
+		when(userRepository.findAllById(batch)).thenReturn(List.of(GRACE));
+		when(userRepository.findVcsNamesByUuids(batch)).thenReturn(List.of());
+
+		index.update(batch);
+
+		assertTrue(index.search("lovelace", 10, false).isEmpty());
+		assertEquals(List.of(GRACE.getUuid()), uuids(index.search("hopper", 10, false)));
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	public void sync_userDeletedOnOtherNode_indexRebuilt() {
+		index.search("warmup", 1, false);
+		UserDirectoryState state = directoryState(2);
+		when(userDirectoryVersion.getState()).thenReturn(state);
+		when(userRepository.streamVcsNames()).thenReturn(Stream.empty());
+		when(userRepository.streamUserProjections()).thenReturn(Stream.<UserProjection>of(BANNED, GRACE));
+
+		index.sync();
+
+		assertTrue(index.search("ada", 10, false).isEmpty());
+		assertEquals(List.of(GRACE.getUuid()), uuids(index.search("oppe", 10, false)));
+	}
+
+	private static UserDirectoryState directoryState(long userCount) {
+		UserDirectoryState state = mock(UserDirectoryState.class);
+		lenient().when(state.getUserCount()).thenReturn(userCount);
+		return state;
+	}
+
+	private static List<UUID> uuids(List<SimpleUserDto> users) {
+		return users.stream().map(SimpleUserDto::getUuid).toList();
+	}
+}
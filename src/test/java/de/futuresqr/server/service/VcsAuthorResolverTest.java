@@ -0,0 +1,182 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.futuresqr.server.datasource.PrimaryReads;
+import de.futuresqr.server.model.backend.UserDirectoryState;
+import de.futuresqr.server.model.backend.UserVcsName;
+import de.futuresqr.server.restdata.UserRepository;
+
+/**
+ * Unit tests for {@link VcsAuthorResolver}.
+ * 
+ * @author Robert Breunung
+ */
+@ExtendWith(MockitoExtension.class)
+public class VcsAuthorResolverTest {
+
+	private static final UUID JANE = UUID.randomUUID();
+	private static final UUID JOHN = UUID.randomUUID();
+	private static final UUID OTHER_JOHN = UUID.randomUUID();
+	private static final Instant LAST_CHANGE = Instant.parse("2022-10-01T12:00:00.123Z");
+
+	@InjectMocks
+	private VcsAuthorResolver resolver;
+
+	@Mock
+	private PrimaryReads primaryReads;
+
+	@Mock
+	private UserDirectoryVersion userDirectoryVersion;
+
+	@Mock
+	private UserRepository userRepository;
+
+	@BeforeEach
+	public void setup() {
+		UserDirectoryState state = directoryState(3, LAST_CHANGE);
+		lenient().when(userDirectoryVersion.getState()).thenReturn(state);
+		when(primaryReads.execute(any())).then(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+		Stream<UserVcsName> vcsNames = Stream.of(vcsName(JANE, "jsmith"), vcsName(JANE, "Jane Smith <jane@example.org>"),
+				vcsName(JOHN, "John Doe <john@example.org>"), vcsName(OTHER_JOHN, "John Doe <jd@other.org>"));
+		when(userRepository.streamVcsNames()).thenReturn(vcsNames);
+	}
+
+	@Test
+	public void resolve_exactName_userFound() {
+		assertEquals(Optional.of(JANE), resolver.resolve("jsmith"));
+	}
+
+	@Test
+	public void resolve_differentCaseAndBlanks_userFound() {
+		assertEquals(Optional.of(JANE), resolver.resolve("  JANE   smith <Jane@Example.org>"));
+	}
+
+	@Test
+	public void resolve_knownEmailOtherName_userFound() {
+		assertEquals(Optional.of(JOHN), resolver.resolve("J. Doe <john@example.org>"));
+	}
+
+	@Test
+	public void resolve_nameOfTwoUsers_ambiguous() {
+		assertTrue(resolver.resolve("John Doe").isEmpty());
+	}
+
+	@Test
+	public void resolveAll_repeatedAndUnknownAuthors_knownAuthorsResolved() {
+		Map<String, UUID> result = resolver.resolveAll(List.of("jsmith", "jsmith", "nobody", "jd@other.org"));
+
+		assertEquals(Map.of("jsmith", JANE, "jd@other.org", OTHER_JOHN), result);
+	}
+
+	@Test
+	public void update_vcsNameRemoved_nameNoLongerAmbiguous() {
+		resolver.resolve("warmup");
+		when(userRepository.findVcsNamesByUuids(List.of(OTHER_JOHN))).thenReturn(List.of());
+
+		resolver.update(List.of(OTHER_JOHN));
+
+		assertEquals(Optional.of(JOHN), resolver.resolve("John Doe"));
+	}
+
+	@Test
+	public void sync_userChangedOnOtherNode_changeApplied() {
+		resolver.resolve("warmup");
+		UserDirectoryState state = directoryState(3, LAST_CHANGE.plusSeconds(5));
+		when(userDirectoryVersion.getState()).thenReturn(state);
+		when(userRepository.findUuidsChangedSince(Instant.parse("2022-10-01T12:00:00Z")))
+				.thenReturn(List.of(OTHER_JOHN));
+		when(userRepository.findVcsNamesByUuids(List.of(OTHER_JOHN))).thenReturn(List.of());
+
+		resolver.sync();
+
+		assertEquals(Optional.of(JOHN), resolver.resolve("John Doe"));
+	}
+
+	@Test
+	public void sync_userDeletedOnOtherNode_indexRebuilt() {
+		resolver.resolve("warmup");
+		UserDirectoryState state = directoryState(2, LAST_CHANGE);
+		when(userDirectoryVersion.getState()).thenReturn(state);
+		Stream<UserVcsName> vcsNames = Stream.of(vcsName(JANE, "jsmith"),
+				vcsName(JOHN, "John Doe <john@example.org>"));
+		when(userRepository.streamVcsNames()).thenReturn(vcsNames);
+
+		resolver.sync();
+
+		assertEquals(Optional.of(JOHN), resolver.resolve("John Doe"));
+		assertTrue(resolver.resolve("jd@other.org").isEmpty());
+	}
+
+	@Test
+	public void sync_previousSyncFailed_changeApplied() {
+		resolver.resolve("warmup");
+		UserDirectoryState state = directoryState(3, LAST_CHANGE.plusSeconds(5));
+		when(userDirectoryVersion.getState()).thenReturn(state);
+		when(userRepository.findUuidsChangedSince(any())).thenThrow(new IllegalStateException("unavailable"))
+				.thenReturn(List.of(OTHER_JOHN));
+		when(userRepository.findVcsNamesByUuids(List.of(OTHER_JOHN))).thenReturn(List.of());
+
+		resolver.sync();
+		resolver.sync();
+
+		assertEquals(Optional.of(JOHN), resolver.resolve("John Doe"));
+	}
+
+	private static UserDirectoryState directoryState(long userCount, Instant lastChangeDate) {
+		UserDirectoryState state = mock(UserDirectoryState.class);
+		lenient().when(state.getUserCount()).thenReturn(userCount);
+		lenient().when(state.getLastChangeDate()).thenReturn(lastChangeDate);
+		return state;
+	}
+
+	private static UserVcsName vcsName(UUID uuid, String name) {
+		UserVcsName vcsName = mock(UserVcsName.class);
+		when(vcsName.getUuid()).thenReturn(uuid);
+		when(vcsName.getVcsName()).thenReturn(name);
+		return vcsName;
+	}
+}
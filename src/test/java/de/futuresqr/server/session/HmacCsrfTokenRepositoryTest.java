@@ -0,0 +1,170 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.csrf.CsrfToken;
+
+import jakarta.servlet.http.Cookie;
+
+/**
+ * Tests for {@link HmacCsrfTokenRepository}.
+ * 
+ * @author Robert Breunung
+ */
+public class HmacCsrfTokenRepositoryTest {
+
+	private static final Instant NOW = Instant.parse("2022-10-01T12:00:00Z");
+
+	private Clock clock;
+	private HmacCsrfTokenRepository repository;
+
+	@BeforeEach
+	public void setup() {
+		clock = mock(Clock.class);
+		repository = new HmacCsrfTokenRepository(new byte[32], Duration.ofHours(12), clock);
+		setTime(NOW);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	public void loadToken_generatedToken_sameToken() {
+		CsrfToken token = repository.generateToken(new MockHttpServletRequest());
+
+		assertEquals(token.getToken(), repository.loadToken(cookieRequest(token.getToken())).getToken());
+	}
+
+	@Test
+	public void issueToken_cookieAndHeader() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		CsrfToken token = repository.issueToken(new MockHttpServletRequest(), response);
+
+		assertEquals(token.getToken(), response.getHeader(HmacCsrfTokenRepository.HEADER_NAME));
+		assertEquals(token.getToken(), response.getCookie(HmacCsrfTokenRepository.COOKIE_NAME).getValue());
+	}
+
+	@Test
+	public void isValid_anonymousTokenAfterLogin_invalid() {
+		String token = repository.generateToken(new MockHttpServletRequest()).getToken();
+		authenticate("jane");
+
+		assertFalse(repository.isValid(token));
+	}
+
+	@Test
+	public void isValid_tokenOfOtherUser_invalid() {
+		authenticate("jane");
+		String token = repository.generateToken(new MockHttpServletRequest()).getToken();
+		authenticate("john");
+
+		assertFalse(repository.isValid(token));
+	}
+
+	@Test
+	public void isValid_tokenOfSameUser_valid() {
+		authenticate("jane");
+		String token = repository.generateToken(new MockHttpServletRequest()).getToken();
+
+		assertTrue(repository.isValid(token));
+	}
+
+	@Test
+	public void isValid_expired_invalid() {
+		String token = repository.generateToken(new MockHttpServletRequest()).getToken();
+		setTime(NOW.plus(Duration.ofHours(12)));
+
+		assertFalse(repository.isValid(token));
+	}
+
+	@Test
+	public void isValid_modifiedTime_invalid() {
+		String token = repository.generateToken(new MockHttpServletRequest()).getToken();
+		String forged = Long.toHexString(NOW.getEpochSecond() + 1) + token.substring(token.indexOf('-'));
+
+		assertFalse(repository.isValid(forged));
+	}
+
+	@Test
+	public void generateToken_sameSecond_differentTokens() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+
+		assertNotEquals(repository.generateToken(request).getToken(), repository.generateToken(request).getToken());
+	}
+
+	@Test
+	public void isValid_modifiedNonce_invalid() {
+		String token = repository.generateToken(new MockHttpServletRequest()).getToken();
+		int nonceStart = token.indexOf('-') + 1;
+		char replaced = token.charAt(nonceStart) == '0' ? '1' : '0';
+		String forged = token.substring(0, nonceStart) + replaced + token.substring(nonceStart + 1);
+
+		assertFalse(repository.isValid(forged));
+	}
+
+	@Test
+	public void loadToken_garbage_null() {
+		assertNull(repository.loadToken(cookieRequest("zz-00")));
+		assertNull(repository.loadToken(cookieRequest("no token")));
+		assertNull(repository.loadToken(new MockHttpServletRequest()));
+	}
+
+	private void authenticate(String name) {
+		SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(name,
+				null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+	}
+
+	private MockHttpServletRequest cookieRequest(String value) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setCookies(new Cookie(HmacCsrfTokenRepository.COOKIE_NAME, value));
+		return request;
+	}
+
+	private void setTime(Instant instant) {
+		when(clock.millis()).thenReturn(instant.toEpochMilli());
+	}
+}
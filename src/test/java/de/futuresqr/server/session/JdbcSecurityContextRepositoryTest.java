@@ -0,0 +1,290 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.SET_COOKIE;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+
+import de.futuresqr.server.model.backend.FsqrUserDetails;
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserRole;
+import de.futuresqr.server.service.SessionPrincipalCache;
+import de.futuresqr.server.service.UserChangedEvent;
+import jakarta.servlet.http.Cookie;
+
+/**
+ * Tests for {@link JdbcSecurityContextRepository} on a local H2 instance with
+ * the session schema of the migration scripts.
+ * 
+ * @author Robert Breunung
+ */
+public class JdbcSecurityContextRepositoryTest {
+
+	private static final Instant NOW = Instant.parse("2022-10-01T12:00:00Z");
+
+	private Clock clock;
+	private JdbcTemplate jdbcTemplate;
+	private SessionPrincipalCache principalCache;
+	private JdbcSecurityContextRepository repository;
+	private FsqrUserDetails user;
+
+	@BeforeEach
+	public void setup() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:session;DB_CLOSE_DELAY=-1",
+				"sa", "");
+		new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__create_user_schema.sql"),
+				new ClassPathResource("db/migration/V2__create_session_schema.sql"),
+				new ClassPathResource("db/migration/V3__index_session_user.sql")).execute(dataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		principalCache = mock(SessionPrincipalCache.class);
+		clock = mock(Clock.class);
+		repository = new JdbcSecurityContextRepository(jdbcTemplate, principalCache,
+				JdbcSecurityContextRepository.DEFAULT_COOKIE_NAME, Duration.ofMinutes(30), Duration.ofMinutes(1), 2,
+				clock);
+		setTime(NOW);
+
+		user = createUser(false, UserRole.USER, UserRole.ADMIN);
+		when(principalCache.get(user.getUuid())).thenReturn(user);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		jdbcTemplate.execute("drop table fsqr_session");
+		jdbcTemplate.execute("drop table persistence_user_vcs_names");
+		jdbcTemplate.execute("drop table fsqr_user");
+	}
+
+	@Test
+	public void loadContext_afterSave_principalRestored() {
+		Cookie cookie = login(user);
+
+		Authentication authentication = load(cookie).getAuthentication();
+
+		assertSame(user, authentication.getPrincipal());
+		assertEquals(Set.copyOf(user.getAuthorities()), Set.copyOf(authentication.getAuthorities()));
+	}
+
+	@Test
+	public void saveContext_rowStoresHashOnly() throws NoSuchAlgorithmException {
+		Cookie cookie = login(user);
+
+		byte[] hash = MessageDigest.getInstance("SHA-256").digest(cookie.getValue().getBytes(US_ASCII));
+		assertArrayEquals(hash, jdbcTemplate.queryForObject("select id from fsqr_session", byte[].class));
+	}
+
+	@Test
+	public void loadContext_unknownCookie_emptyContext() {
+		login(user);
+
+		assertNull(load(new Cookie(JdbcSecurityContextRepository.DEFAULT_COOKIE_NAME, "invalid")).getAuthentication());
+	}
+
+	@Test
+	public void loadContext_expired_emptyContextAndRowDeleted() {
+		Cookie cookie = login(user);
+		setTime(NOW.plus(Duration.ofMinutes(31)));
+
+		assertNull(load(cookie).getAuthentication());
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void loadContext_afterTouchInterval_expiryExtended() {
+		Cookie cookie = login(user);
+		setTime(NOW.plus(Duration.ofMinutes(20)));
+		load(cookie);
+		setTime(NOW.plus(Duration.ofMinutes(40)));
+
+		assertSame(user, load(cookie).getAuthentication().getPrincipal());
+	}
+
+	@Test
+	public void loadContext_bannedUser_emptyContext() {
+		Cookie cookie = login(user);
+		when(principalCache.get(user.getUuid())).thenReturn(createUser(true, UserRole.USER, UserRole.ADMIN));
+
+		assertNull(load(cookie).getAuthentication());
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void loadContext_roleRevoked_roleNotGranted() {
+		Cookie cookie = login(user);
+		when(principalCache.get(user.getUuid())).thenReturn(createUser(false, UserRole.USER));
+
+		assertEquals(UserRole.toGrantedAuthorities(UserRole.toMask(UserRole.USER)),
+				load(cookie).getAuthentication().getAuthorities());
+	}
+
+	@Test
+	public void onUserChanged_bannedUser_allSessionsDeleted() {
+		login(user);
+		login(user);
+		insertUser(true, UserRole.USER, UserRole.ADMIN);
+
+		repository.onUserChanged(new UserChangedEvent(user.getUuid(), user.getUsername()));
+
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void onUserChanged_roleRevoked_sessionsWithRoleDeleted() {
+		Cookie adminCookie = login(user);
+		Cookie userCookie = login(createUser(false, UserRole.USER));
+		insertUser(false, UserRole.USER);
+
+		repository.onUserChanged(new UserChangedEvent(user.getUuid(), user.getUsername()));
+
+		assertFalse(repository.containsContext(createRequest(adminCookie)), "Session of the admin deleted.");
+		assertTrue(repository.containsContext(createRequest(userCookie)), "Session of the user kept.");
+	}
+
+	@Test
+	public void onUserChanged_unchangedRoles_sessionsKept() {
+		login(user);
+		insertUser(false, UserRole.USER, UserRole.ADMIN);
+
+		repository.onUserChanged(new UserChangedEvent(user.getUuid(), user.getUsername()));
+
+		assertEquals(1, count());
+	}
+
+	@Test
+	public void onUserChanged_deletedUser_allSessionsDeleted() {
+		login(user);
+
+		repository.onUserChanged(new UserChangedEvent(user.getUuid(), user.getUsername()));
+
+		assertEquals(0, count());
+	}
+
+	@Test
+	public void logout_sessionDeleted() {
+		Cookie cookie = login(user);
+		MockHttpServletRequest request = createRequest(cookie);
+
+		repository.logout(request, new MockHttpServletResponse(), null);
+
+		assertEquals(0, count());
+		assertFalse(repository.containsContext(createRequest(cookie)));
+	}
+
+	@Test
+	public void saveContext_secondLogin_previousSessionReplaced() {
+		Cookie cookie = login(user);
+		MockHttpServletRequest request = createRequest(cookie);
+		SecurityContext context = repository.loadContext(new HttpRequestResponseHolder(request, null));
+
+		repository.saveContext(context, request, new MockHttpServletResponse());
+
+		assertEquals(1, count());
+		assertNull(load(cookie).getAuthentication());
+	}
+
+	@Test
+	public void deleteExpiredSessions_moreThanBatch_allDeleted() {
+		for (int i = 0; i < 5; i++) {
+			login(user);
+		}
+		Cookie cookie = login(user);
+		setTime(NOW.plus(Duration.ofMinutes(20)));
+		load(cookie);
+
+		assertEquals(5, repository.deleteExpiredSessions(NOW.plus(Duration.ofMinutes(40)).toEpochMilli()));
+		assertEquals(1, count());
+		assertTrue(repository.containsContext(createRequest(cookie)));
+	}
+
+	private FsqrUserDetails createUser(boolean banned, UserRole... roles) {
+		PersistenceUser persistenceUser = PersistenceUser.builder().uuid(UUID.fromString(
+				"00000000-0000-0000-0000-000000000001")).loginName("jane").password("{noop}secret").banned(banned)
+				.roles(UserRole.toMask(roles)).build();
+		FsqrUserDetails principal = PersistenceUser.toUserDetails(persistenceUser);
+		principal.eraseCredentials();
+		return principal;
+	}
+
+	private void insertUser(boolean banned, UserRole... roles) {
+		jdbcTemplate.update("insert into fsqr_user (uuid, banned, roles, version) values (?, ?, ?, 0)",
+				user.getUuid(), banned, UserRole.toMask(roles));
+	}
+
+	private Cookie login(FsqrUserDetails principal) {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		repository.saveContext(new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(principal,
+				null, principal.getAuthorities())), new MockHttpServletRequest(), response);
+		String setCookie = response.getHeader(SET_COOKIE);
+		String[] cookie = setCookie.substring(0, setCookie.indexOf(';')).split("=", 2);
+		return new Cookie(cookie[0], cookie[1]);
+	}
+
+	private SecurityContext load(Cookie cookie) {
+		return repository.loadContext(new HttpRequestResponseHolder(createRequest(cookie), null));
+	}
+
+	private MockHttpServletRequest createRequest(Cookie cookie) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setCookies(cookie);
+		return request;
+	}
+
+	private int count() {
+		return jdbcTemplate.queryForObject("select count(*) from fsqr_session", Integer.class);
+	}
+
+	private void setTime(Instant instant) {
+		when(clock.millis()).thenReturn(instant.toEpochMilli());
+	}
+}
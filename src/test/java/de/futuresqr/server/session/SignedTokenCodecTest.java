@@ -0,0 +1,140 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import de.futuresqr.server.session.SignedTokenCodec.Token;
+import de.futuresqr.server.session.SignedTokenCodec.TokenType;
+
+/**
+ * Tests for {@link SignedTokenCodec}.
+ * 
+ * @author Robert Breunung
+ */
+public class SignedTokenCodecTest {
+
+	private static final byte[] KEY_1 = new byte[32];
+	private static final byte[] KEY_2 = new byte[32];
+	private static final Token TOKEN = new Token(TokenType.ACCESS, UUID.randomUUID(), "jäne", 3, 500, 1000,
+			2000);
+
+	static {
+		KEY_1[0] = 1;
+		KEY_2[0] = 2;
+	}
+
+	@Test
+	public void decode_encoded_sameToken() {
+		SignedTokenCodec codec = new SignedTokenCodec(Map.of(1, KEY_1));
+
+		assertEquals(TOKEN, codec.decode(codec.encode(TOKEN), TokenType.ACCESS, 1500));
+	}
+
+	@Test
+	public void decode_expired_null() {
+		SignedTokenCodec codec = new SignedTokenCodec(Map.of(1, KEY_1));
+
+		assertNull(codec.decode(codec.encode(TOKEN), TokenType.ACCESS, 2000));
+	}
+
+	@Test
+	public void decode_otherType_null() {
+		SignedTokenCodec codec = new SignedTokenCodec(Map.of(1, KEY_1));
+
+		assertNull(codec.decode(codec.encode(TOKEN), TokenType.REFRESH, 1500));
+	}
+
+	@Test
+	public void decode_modifiedPayload_null() {
+		SignedTokenCodec codec = new SignedTokenCodec(Map.of(1, KEY_1));
+		String token = codec.encode(TOKEN);
+		String forged = codec.encode(new Token(TokenType.ACCESS, TOKEN.getUserUuid(), "jäne", 7, 500, 1000,
+				2000));
+
+		assertNull(codec.decode(forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.')),
+				TokenType.ACCESS, 1500));
+	}
+
+	@Test
+	public void decode_previousFormatWithoutLoginTime_null() {
+		SignedTokenCodec codec = new SignedTokenCodec(Map.of(1, KEY_1));
+		byte[] loginName = "jane".getBytes(UTF_8);
+		ByteBuffer payload = ByteBuffer.allocate(38 + loginName.length);
+		payload.put((byte) TokenType.ACCESS.ordinal()).put((byte) 1);
+		payload.putLong(TOKEN.getUserUuid().getMostSignificantBits());
+		payload.putLong(TOKEN.getUserUuid().getLeastSignificantBits());
+		payload.putInt(3).putLong(1000).putLong(2000).put(loginName);
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		String token = encoder.encodeToString(payload.array()) + '.'
+				+ encoder.encodeToString(new HmacKey(KEY_1).sign(payload.array()));
+
+		assertNull(codec.decode(token, TokenType.ACCESS, 1500));
+	}
+
+	@Test
+	public void decode_garbage_null() {
+		SignedTokenCodec codec = new SignedTokenCodec(Map.of(1, KEY_1));
+
+		assertNull(codec.decode("no token", TokenType.ACCESS, 1500));
+		assertNull(codec.decode("a.b", TokenType.ACCESS, 1500));
+	}
+
+	@Test
+	public void decode_rotatedKey_previousTokenValid() {
+		String token = new SignedTokenCodec(Map.of(1, KEY_1)).encode(TOKEN);
+		Map<Integer, byte[]> rotated = new LinkedHashMap<>();
+		rotated.put(2, KEY_2);
+		rotated.put(1, KEY_1);
+
+		assertNotNull(new SignedTokenCodec(rotated).decode(token, TokenType.ACCESS, 1500));
+	}
+
+	@Test
+	public void decode_removedKey_null() {
+		String token = new SignedTokenCodec(Map.of(1, KEY_1)).encode(TOKEN);
+
+		assertNull(new SignedTokenCodec(Map.of(2, KEY_2)).decode(token, TokenType.ACCESS, 1500));
+	}
+
+	@Test
+	public void parseKeys_idAndSecret_parsed() {
+		Map<Integer, byte[]> keys = SignedTokenCodec.parseKeys(List.of("7:AQID"));
+
+		assertEquals(1, keys.size());
+		assertEquals(3, keys.get(7).length);
+	}
+}
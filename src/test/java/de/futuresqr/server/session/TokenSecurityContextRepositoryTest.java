@@ -0,0 +1,267 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2022 Robert Breunung
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.futuresqr.server.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+import static org.springframework.http.HttpHeaders.SET_COOKIE;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+
+import de.futuresqr.server.model.backend.FsqrUserDetails;
+import de.futuresqr.server.model.backend.PersistenceUser;
+import de.futuresqr.server.model.backend.UserRole;
+import de.futuresqr.server.service.UserChangedEvent;
+import de.futuresqr.server.session.SignedTokenCodec.Token;
+import jakarta.servlet.http.Cookie;
+
+/**
+ * Tests for {@link TokenSecurityContextRepository}.
+ * 
+ * @author Robert Breunung
+ */
+public class TokenSecurityContextRepositoryTest {
+
+	private static final Instant NOW = Instant.parse("2022-10-01T12:00:00Z");
+
+	private Clock clock;
+	private TokenSecurityContextRepository repository;
+	private Clock revocationClock;
+	private TokenRevocationSet revocationSet;
+	private FsqrUserDetails user;
+
+	@BeforeEach
+	public void setup() {
+		clock = mock(Clock.class);
+		revocationClock = mock(Clock.class);
+		revocationSet = new TokenRevocationSet(Duration.ofHours(8), revocationClock);
+		repository = new TokenSecurityContextRepository(new SignedTokenCodec(Map.of(1, new byte[32])), revocationSet,
+				Duration.ofMinutes(5), Duration.ofHours(8), clock);
+		setTime(NOW);
+
+		PersistenceUser persistenceUser = PersistenceUser.builder().uuid(UUID.randomUUID()).loginName("jane")
+				.password("{noop}secret").roles(UserRole.toMask(UserRole.USER, UserRole.ADMIN)).build();
+		user = PersistenceUser.toUserDetails(persistenceUser);
+	}
+
+	@Test
+	public void loadContext_accessCookie_authenticated() {
+		Map<String, String> cookies = login();
+
+		Authentication authentication = load(cookieRequest(cookies)).getAuthentication();
+
+		assertEquals("jane", authentication.getName());
+		assertEquals(UserRole.toGrantedAuthorities(UserRole.toMask(UserRole.USER, UserRole.ADMIN)),
+				authentication.getAuthorities());
+	}
+
+	@Test
+	public void loadContext_bearerHeader_authenticated() {
+		Map<String, String> cookies = login();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(AUTHORIZATION, "Bearer " + cookies.get(TokenSecurityContextRepository.ACCESS_COOKIE_NAME));
+
+		assertEquals("jane", load(request).getAuthentication().getName());
+	}
+
+	@Test
+	public void loadContext_refreshTokenAsAccessToken_anonymous() {
+		Map<String, String> cookies = login();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(AUTHORIZATION, "Bearer " + cookies.get(TokenSecurityContextRepository.REFRESH_COOKIE_NAME));
+
+		assertNull(load(request).getAuthentication());
+	}
+
+	@Test
+	public void loadContext_expired_anonymous() {
+		Map<String, String> cookies = login();
+		setTime(NOW.plus(Duration.ofMinutes(5)));
+
+		assertNull(load(cookieRequest(cookies)).getAuthentication());
+		assertNotNull(repository.getRefreshToken(cookieRequest(cookies)));
+	}
+
+	@Test
+	public void loadContext_revoked_anonymous() {
+		Map<String, String> cookies = login();
+		when(revocationClock.millis()).thenReturn(NOW.plusMillis(1).toEpochMilli());
+		revocationSet.revoke(user.getUuid());
+
+		assertNull(load(cookieRequest(cookies)).getAuthentication());
+		assertFalse(repository.containsContext(cookieRequest(cookies)));
+	}
+
+	@Test
+	public void getRefreshToken_afterProfileChange_refreshedWithNewTokens() {
+		Map<String, String> cookies = login();
+		setTime(NOW.plusMillis(1));
+		revocationSet.onUserChanged(new UserChangedEvent(user.getUuid(), user.getUsername()));
+
+		Token refreshToken = repository.getRefreshToken(cookieRequest(cookies));
+		assertNotNull(refreshToken, "Refresh token valid after profile change.");
+		setTime(NOW.plusMillis(2));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		repository.refreshTokens(refreshToken, user, new MockHttpServletRequest(), response);
+
+		assertNull(load(cookieRequest(cookies)).getAuthentication(), "Previous access token revoked.");
+		assertEquals("jane", load(cookieRequest(getCookies(response))).getAuthentication().getName());
+	}
+
+	@Test
+	public void logout_loginRevoked_refreshRejected() {
+		Map<String, String> cookies = login();
+		Map<String, String> otherCookies = login(NOW.plusMillis(1));
+
+		repository.logout(cookieRequest(cookies), new MockHttpServletResponse(), null);
+
+		assertNull(repository.getRefreshToken(refreshCookieRequest(cookies)), "Refresh token revoked.");
+		assertNull(load(cookieRequest(cookies)).getAuthentication(), "Access token revoked.");
+		assertNotNull(repository.getRefreshToken(refreshCookieRequest(otherCookies)), "Other login kept.");
+	}
+
+	@Test
+	public void logout_afterRefresh_earlierRefreshTokenRejected() {
+		Map<String, String> cookies = login();
+		setTime(NOW.plus(Duration.ofMinutes(10)));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		repository.refreshTokens(repository.getRefreshToken(refreshCookieRequest(cookies)), user,
+				new MockHttpServletRequest(), response);
+		Map<String, String> refreshedCookies = getCookies(response);
+
+		repository.logout(cookieRequest(refreshedCookies), new MockHttpServletResponse(), null);
+
+		assertNull(repository.getRefreshToken(refreshCookieRequest(cookies)), "Copied refresh token revoked.");
+		assertNull(repository.getRefreshToken(refreshCookieRequest(refreshedCookies)), "Refresh token revoked.");
+	}
+
+	@Test
+	public void refreshTokens_revokedRole_notGranted() {
+		Map<String, String> cookies = login();
+		FsqrUserDetails plainUser = PersistenceUser.toUserDetails(PersistenceUser.builder().uuid(user.getUuid())
+				.loginName("jane").password("{noop}secret").roles(UserRole.toMask(UserRole.USER)).build());
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		repository.refreshTokens(repository.getRefreshToken(refreshCookieRequest(cookies)), plainUser,
+				new MockHttpServletRequest(), response);
+
+		assertEquals(UserRole.toGrantedAuthorities(UserRole.toMask(UserRole.USER)),
+				load(cookieRequest(getCookies(response))).getAuthentication().getAuthorities());
+	}
+
+	@Test
+	public void logout_expiredAccessToken_refreshRejected() {
+		Map<String, String> cookies = login();
+		setTime(NOW.plus(Duration.ofMinutes(10)));
+
+		repository.logout(cookieRequest(cookies), new MockHttpServletResponse(), null);
+
+		assertNull(repository.getRefreshToken(refreshCookieRequest(cookies)), "Refresh token revoked.");
+	}
+
+	@Test
+	public void loadContext_revokedBeforeLogin_authenticated() {
+		when(revocationClock.millis()).thenReturn(NOW.minusMillis(1).toEpochMilli());
+		revocationSet.revoke(user.getUuid());
+		Map<String, String> cookies = login();
+
+		assertEquals("jane", load(cookieRequest(cookies)).getAuthentication().getName());
+	}
+
+	@Test
+	public void revoke_afterRetention_entryDropped() {
+		revocationSet.revoke(user.getUuid());
+		when(revocationClock.millis()).thenReturn(NOW.plus(Duration.ofHours(9)).toEpochMilli());
+		revocationSet.revoke(UUID.randomUUID());
+
+		assertEquals(1, revocationSet.size());
+	}
+
+	private Map<String, String> login() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		repository.saveContext(new SecurityContextImpl(
+				UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities())),
+				new MockHttpServletRequest(), response);
+		return getCookies(response);
+	}
+
+	private Map<String, String> login(Instant instant) {
+		setTime(instant);
+		Map<String, String> cookies = login();
+		setTime(NOW);
+		return cookies;
+	}
+
+	private Map<String, String> getCookies(MockHttpServletResponse response) {
+		return response.getHeaders(SET_COOKIE).stream()
+				.map(setCookie -> setCookie.substring(0, setCookie.indexOf(';')).split("=", 2))
+				.collect(Collectors.toMap(cookie -> cookie[0], cookie -> cookie[1]));
+	}
+
+	private SecurityContext load(MockHttpServletRequest request) {
+		return repository.loadContext(new HttpRequestResponseHolder(request, new MockHttpServletResponse()));
+	}
+
+	private MockHttpServletRequest cookieRequest(Map<String, String> cookies) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setCookies(cookies.entrySet().stream().map(cookie -> new Cookie(cookie.getKey(), cookie.getValue()))
+				.toArray(Cookie[]::new));
+		return request;
+	}
+
+	/**
+	 * The refresh cookie only, as sent to the refresh path.
+	 */
+	private MockHttpServletRequest refreshCookieRequest(Map<String, String> cookies) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setCookies(new Cookie(TokenSecurityContextRepository.REFRESH_COOKIE_NAME,
+				cookies.get(TokenSecurityContextRepository.REFRESH_COOKIE_NAME)));
+		return request;
+	}
+
+	private void setTime(Instant instant) {
+		when(clock.millis()).thenReturn(instant.toEpochMilli());
+		when(revocationClock.millis()).thenReturn(instant.toEpochMilli());
+	}
+}